@@ -14,8 +14,9 @@ import androidx.loader.content.CursorLoader;
 import androidx.loader.content.Loader;
 import androidx.appcompat.app.AppCompatActivity;
 import android.widget.Toast;
-import java.util.ArrayList;
-import java.util.List;
+import com.tylersuehr.chips.Chip;
+import com.tylersuehr.chips.ChipCatalog;
+import com.tylersuehr.chips.CursorChipCatalog;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -44,28 +45,10 @@ abstract class ContactLoadingActivity extends AppCompatActivity implements Loade
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        // Collect all the contact information from the Cursor in a List
-        List<ContactChip> chips = new ArrayList<>(data.getCount());
-        for (int i = 0; i < data.getCount(); i++) {
-            data.moveToPosition(i);
-
-            ContactChip chip = new ContactChip();
-            chip.setId(i);
-            chip.setName(data.getString(data.getColumnIndex(ContactsContract.PhoneLookup.DISPLAY_NAME)));
-            chip.setPhone(data.getString(data.getColumnIndex(ContactsContract.CommonDataKinds.Phone.NUMBER)));
-            int phoneType = data.getInt(data.getColumnIndex(ContactsContract.CommonDataKinds.Phone.TYPE));
-            chip.setPhoneType(ContactsContract.CommonDataKinds.Phone.getTypeLabel(getResources(), phoneType, "").toString());
-
-            String avatar = data.getString(data.getColumnIndex(ContactsContract.CommonDataKinds.Phone.PHOTO_THUMBNAIL_URI));
-            if (avatar != null) {
-                chip.setAvatarUri(Uri.parse(avatar));
-            }
-
-            chips.add(chip);
-        }
-
-        // Set the list of chips on the ChipsInput and normal adapter
-        onContactsAvailable(chips);
+        // Contact chips are only created from the Cursor as they are needed, and
+        // selected contacts are found again by their id when the Cursor is reloaded
+        onContactsAvailable(new CursorChipCatalog(data, new ContactRowMapper(data),
+                ContactsContract.CommonDataKinds.Phone._ID));
     }
 
     @Override
@@ -118,14 +101,68 @@ abstract class ContactLoadingActivity extends AppCompatActivity implements Loade
     }
 
     /**
-     * Called when the current user's contacts are available as a list of {@link ContactChip}.
+     * Called when the current user's contacts are available as a catalog of {@link ContactChip}.
      *
-     * @param chips List of {@link ContactChip}
+     * @param catalog {@link ChipCatalog} of {@link ContactChip}
      */
-    protected abstract void onContactsAvailable(List<ContactChip> chips);
+    protected abstract void onContactsAvailable(ChipCatalog catalog);
 
     /**
-     * Called when the current user's contacts should be reset.
+     * Called when the current user's contacts should be reset. The cursor of the last
+     * catalog is about to be closed, so it must not be used anymore.
      */
     protected abstract void onContactsReset();
+
+
+    /**
+     * Maps the rows of the contacts Cursor into {@link ContactChip}.
+     */
+    private final class ContactRowMapper implements CursorChipCatalog.RowMapper {
+        private final int idColumn;
+        private final int nameColumn;
+        private final int phoneColumn;
+        private final int phoneTypeColumn;
+        private final int avatarColumn;
+
+        ContactRowMapper(Cursor data) {
+            this.idColumn = data.getColumnIndex(ContactsContract.CommonDataKinds.Phone._ID);
+            this.nameColumn = data.getColumnIndex(ContactsContract.PhoneLookup.DISPLAY_NAME);
+            this.phoneColumn = data.getColumnIndex(ContactsContract.CommonDataKinds.Phone.NUMBER);
+            this.phoneTypeColumn = data.getColumnIndex(ContactsContract.CommonDataKinds.Phone.TYPE);
+            this.avatarColumn = data.getColumnIndex(ContactsContract.CommonDataKinds.Phone.PHOTO_THUMBNAIL_URI);
+        }
+
+        @NonNull
+        @Override
+        public Chip createChip(Cursor cursor, int row) {
+            ContactChip chip = new ContactChip();
+            chip.setId(cursor.getInt(idColumn));
+            chip.setName(cursor.getString(nameColumn));
+            chip.setPhone(cursor.getString(phoneColumn));
+            chip.setPhoneType(getPhoneType(cursor));
+
+            String avatar = cursor.getString(avatarColumn);
+            if (avatar != null) {
+                chip.setAvatarUri(Uri.parse(avatar));
+            }
+            return chip;
+        }
+
+        @NonNull
+        @Override
+        public String getTitle(Cursor cursor) {
+            return cursor.getString(nameColumn);
+        }
+
+        @Override
+        public String getSubtitle(Cursor cursor) {
+            String phone = cursor.getString(phoneColumn);
+            return phone != null ? getPhoneType(cursor) + ": " + phone : null;
+        }
+
+        private String getPhoneType(Cursor cursor) {
+            int phoneType = cursor.getInt(phoneTypeColumn);
+            return ContactsContract.CommonDataKinds.Phone.getTypeLabel(getResources(), phoneType, "").toString();
+        }
+    }
 }
\ No newline at end of file
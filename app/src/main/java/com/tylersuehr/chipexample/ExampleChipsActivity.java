@@ -4,8 +4,8 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.appcompat.widget.Toolbar;
 
+import com.tylersuehr.chips.ChipCatalog;
 import com.tylersuehr.chips.ChipsInputLayout;
-import java.util.List;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -45,14 +45,17 @@ public class ExampleChipsActivity extends ContactLoadingActivity
      * When we have contact chips available, let's make them filterable in our ChipsInputView!
      */
     @Override
-    protected void onContactsAvailable(List<ContactChip> chips) {
-        System.out.println("Number of contacts: " + chips.size());
-        this.chipsInput.setFilterableChipList(chips);
+    protected void onContactsAvailable(ChipCatalog catalog) {
+        System.out.println("Number of contacts: " + catalog.getCount());
+        this.chipsInput.setFilterableChipCatalog(catalog);
     }
 
+    /**
+     * The catalog's cursor is about to be closed, so stop filtering with it.
+     */
     @Override
     protected void onContactsReset() {
-
+        this.chipsInput.clearFilteredChips();
     }
 
     @Override
@@ -4,10 +4,9 @@ import android.os.Bundle;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.Toolbar;
 
+import com.tylersuehr.chips.ChipCatalog;
 import com.tylersuehr.chips.ChipsInputLayout;
 
-import java.util.List;
-
 /**
  * Copyright © 2017 Tyler Suehr
  *
@@ -40,13 +39,18 @@ public class MainActivity extends ContactLoadingActivity
      * When we have contact chips available, let's make them filterable in our ChipsInputView!
      */
     @Override
-    protected void onContactsAvailable(List<ContactChip> chips) {
-        System.out.println("Number of contacts: " + chips.size());
-        mChipsInput.setFilterableChipList(chips);
+    protected void onContactsAvailable(ChipCatalog catalog) {
+        System.out.println("Number of contacts: " + catalog.getCount());
+        mChipsInput.setFilterableChipCatalog(catalog);
     }
 
+    /**
+     * The catalog's cursor is about to be closed, so stop filtering with it.
+     */
     @Override
-    protected void onContactsReset() {}
+    protected void onContactsReset() {
+        mChipsInput.clearFilteredChips();
+    }
 
     @Override
     public void onContactClicked(ContactChip chip) {}
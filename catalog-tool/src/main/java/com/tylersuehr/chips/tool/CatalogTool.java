@@ -0,0 +1,55 @@
+package com.tylersuehr.chips.tool;
+import com.tylersuehr.chips.ChipCatalogWriter;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Command-line tool that builds a catalog file for {@code MappedChipCatalog} from a
+ * CSV or JSON file, so the catalog can be shipped with an app (like in its assets).
+ *
+ * Usage: {@code catalog-tool <input.csv|input.json> <output>}
+ *
+ * A CSV file has an id, title, and optional subtitle on each line, with an optional
+ * header line. A JSON file has an array of objects with "id", "title", and optional
+ * "subtitle" properties. Ids must be unique numbers.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public final class CatalogTool {
+    private CatalogTool() {}
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: catalog-tool <input.csv|input.json> <output>");
+            System.exit(2);
+        }
+
+        final File input = new File(args[0]);
+        final File output = new File(args[1]);
+        try {
+            final ChipCatalogWriter writer = new ChipCatalogWriter();
+            final Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(input), "UTF-8"));
+            try {
+                if (input.getName().toLowerCase().endsWith(".json")) {
+                    new JsonRowReader(in).readInto(writer);
+                } else {
+                    new CsvRowReader(in).readInto(writer);
+                }
+            } finally {
+                in.close();
+            }
+            writer.writeTo(output);
+            System.out.println("Wrote " + writer.getCount() + " chips to " + output);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Couldn't build catalog: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.tylersuehr.chips.tool;
+import com.tylersuehr.chips.ChipCatalogWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Reads rows of a catalog from CSV, where each record is an id, title, and
+ * optional subtitle. Fields can be quoted (RFC 4180). If the first record's id
+ * isn't a number, it's treated as a header and skipped.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class CsvRowReader {
+    private final Reader mIn;
+    private final StringBuilder mField = new StringBuilder();
+    private int mLine = 1;
+    /* Line the last record started on */
+    private int mRecordLine;
+
+
+    CsvRowReader(Reader in) {
+        mIn = in;
+    }
+
+    void readInto(ChipCatalogWriter writer) throws IOException {
+        final List<String> record = new ArrayList<>(3);
+        boolean first = true;
+        while (readRecord(record)) {
+            if (record.size() == 1 && record.get(0).isEmpty()) {
+                continue; // Blank line
+            }
+            if (record.size() < 2) {
+                throw new IOException("Line " + mRecordLine + ": expected id and title");
+            }
+
+            final long id;
+            try {
+                id = Long.parseLong(record.get(0).trim());
+            } catch (NumberFormatException e) {
+                if (first) {
+                    first = false;
+                    continue; // Header
+                }
+                throw new IOException("Line " + mRecordLine + ": id isn't a number: " + record.get(0));
+            }
+            first = false;
+
+            final String subtitle = record.size() > 2 && !record.get(2).isEmpty() ? record.get(2) : null;
+            writer.add(id, record.get(1), subtitle);
+        }
+    }
+
+    /* Reads the fields of the next record, returning false at the end of the input */
+    private boolean readRecord(List<String> record) throws IOException {
+        record.clear();
+        mField.setLength(0);
+        mRecordLine = mLine;
+
+        int c = mIn.read();
+        if (c == -1) {
+            return false;
+        }
+
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Line " + mRecordLine + ": unterminated quote");
+                }
+                if (c == '"') {
+                    c = mIn.read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                }
+                if (c == '\n') {
+                    mLine++;
+                }
+                mField.append((char)c);
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                record.add(mField.toString());
+                mField.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                record.add(mField.toString());
+                if (c == '\n') {
+                    mLine++;
+                }
+                return true;
+            } else if (c != '\r') {
+                mField.append((char)c);
+            }
+            c = mIn.read();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.tylersuehr.chips.tool;
+import com.tylersuehr.chips.ChipCatalogWriter;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Reads rows of a catalog from a JSON array of objects, each with an "id" (a number,
+ * or a string of a number), a "title", and an optional "subtitle". Other properties
+ * are skipped.
+ *
+ * This reads the input a char at a time, rather than parsing the whole document into
+ * objects first. The rows themselves are still kept in memory by the
+ * {@link ChipCatalogWriter} they're added to, until it writes the catalog.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class JsonRowReader {
+    private final Reader mIn;
+    private final StringBuilder mText = new StringBuilder();
+    /* Next char of the input, or -2 if it hasn't been read */
+    private int mPeeked = -2;
+    private int mLine = 1;
+
+
+    JsonRowReader(Reader in) {
+        mIn = in;
+    }
+
+    void readInto(ChipCatalogWriter writer) throws IOException {
+        expect('[');
+        if (peek() == ']') {
+            next();
+            return;
+        }
+        do {
+            readRow(writer);
+        } while (nextEither(',', ']') == ',');
+    }
+
+    private void readRow(ChipCatalogWriter writer) throws IOException {
+        // Skip the whitespace before the row first, so errors give the line it starts on
+        skipWhitespace();
+        final int line = mLine;
+        Long id = null;
+        String title = null;
+        String subtitle = null;
+
+        expect('{');
+        if (peek() == '}') {
+            next();
+        } else {
+            do {
+                final String name = readString();
+                expect(':');
+                if ("id".equals(name)) {
+                    id = readId();
+                } else if ("title".equals(name)) {
+                    title = readNullableString();
+                } else if ("subtitle".equals(name)) {
+                    subtitle = readNullableString();
+                } else {
+                    skipValue();
+                }
+            } while (nextEither(',', '}') == ',');
+        }
+
+        if (id == null || title == null) {
+            throw new IOException("Line " + line + ": expected id and title");
+        }
+        writer.add(id, title, subtitle);
+    }
+
+    private long readId() throws IOException {
+        final String value = peek() == '"' ? readString() : readLiteral();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Line " + mLine + ": id isn't a number: " + value);
+        }
+    }
+
+    private String readNullableString() throws IOException {
+        if (peek() == '"') {
+            return readString();
+        }
+        final String literal = readLiteral();
+        if (!"null".equals(literal)) {
+            throw new IOException("Line " + mLine + ": expected string, but was " + literal);
+        }
+        return null;
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        mText.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == '"') {
+                return mText.toString();
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'b': c = '\b'; break;
+                    case 'f': c = '\f'; break;
+                    case 'n': c = '\n'; break;
+                    case 'r': c = '\r'; break;
+                    case 't': c = '\t'; break;
+                    case 'u':
+                        c = 0;
+                        for (int i = 0; i < 4; i++) {
+                            final int digit = Character.digit(read(), 16);
+                            if (digit == -1) {
+                                throw new IOException("Line " + mLine + ": bad unicode escape");
+                            }
+                            c = (c << 4) | digit;
+                        }
+                        break;
+                    default: break; // Quote, backslash, and slash are themselves
+                }
+            }
+            mText.append((char)c);
+        }
+    }
+
+    /* Reads a number, true, false, or null */
+    private String readLiteral() throws IOException {
+        skipWhitespace();
+        mText.setLength(0);
+        int c = peek();
+        while (c != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+            mText.append((char)next());
+            c = peek();
+        }
+        if (mText.length() == 0) {
+            throw new IOException("Line " + mLine + ": expected value");
+        }
+        return mText.toString();
+    }
+
+    private void skipValue() throws IOException {
+        final int c = peek();
+        if (c == '"') {
+            readString();
+        } else if (c == '{' || c == '[') {
+            final char close = c == '{' ? '}' : ']';
+            next();
+            if (peek() == close) {
+                next();
+                return;
+            }
+            do {
+                if (close == '}') {
+                    readString();
+                    expect(':');
+                }
+                skipValue();
+            } while (nextEither(',', close) == ',');
+        } else {
+            readLiteral();
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        final int c = next();
+        if (c != expected) {
+            throw new IOException("Line " + mLine + ": expected '" + expected + "'");
+        }
+    }
+
+    private int nextEither(char a, char b) throws IOException {
+        final int c = next();
+        if (c != a && c != b) {
+            throw new IOException("Line " + mLine + ": expected '" + a + "' or '" + b + "'");
+        }
+        return c;
+    }
+
+    /* Next char that isn't whitespace, without consuming it */
+    private int peek() throws IOException {
+        skipWhitespace();
+        return mPeeked;
+    }
+
+    /* Consumes the next char that isn't whitespace */
+    private int next() throws IOException {
+        skipWhitespace();
+        final int c = mPeeked;
+        mPeeked = -2;
+        return c;
+    }
+
+    private void skipWhitespace() throws IOException {
+        if (mPeeked == -2) {
+            mPeeked = mIn.read();
+        }
+        while (mPeeked != -1 && Character.isWhitespace(mPeeked)) {
+            if (mPeeked == '\n') {
+                mLine++;
+            }
+            mPeeked = mIn.read();
+        }
+    }
+
+    /* Consumes the next char, including whitespace */
+    private int read() throws IOException {
+        final int c = mPeeked != -2 ? mPeeked : mIn.read();
+        mPeeked = -2;
+        if (c == -1) {
+            throw new IOException("Line " + mLine + ": unexpected end of input");
+        }
+        return c;
+    }
+}
@@ -0,0 +1,77 @@
+package com.tylersuehr.chips.tool;
+import com.tylersuehr.chips.ChipCatalogWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Reads back the rows a reader added to a {@link ChipCatalogWriter}, by decoding the
+ * catalog it writes, so the reader tests don't need the library's catalogs.
+ *
+ * Each row is given as "id|title|subtitle", with "null" for a missing subtitle.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class CatalogRows {
+    private CatalogRows() {}
+
+    static List<String> readCsv(String csv) throws IOException {
+        final ChipCatalogWriter writer = new ChipCatalogWriter();
+        new CsvRowReader(new StringReader(csv)).readInto(writer);
+        return rowsOf(writer);
+    }
+
+    static List<String> readJson(String json) throws IOException {
+        final ChipCatalogWriter writer = new ChipCatalogWriter();
+        new JsonRowReader(new StringReader(json)).readInto(writer);
+        return rowsOf(writer);
+    }
+
+    static List<String> rowsOf(ChipCatalogWriter writer) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(Channels.newChannel(out));
+        final ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.getInt() != ChipCatalogWriter.MAGIC) {
+            throw new IOException("Not a chip catalog!");
+        }
+        buffer.getInt(); // Version
+        final int count = buffer.getInt();
+        final int textLength = buffer.getInt();
+
+        final long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = buffer.getLong();
+        }
+        final int[] starts = new int[(count << 1) + 1];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = buffer.getInt();
+        }
+        buffer.position(buffer.position() + 4 * count); // Rows sorted by id
+        final int[] flags = new int[(count + 31) >>> 5];
+        for (int i = 0; i < flags.length; i++) {
+            flags[i] = buffer.getInt();
+        }
+        final char[] text = new char[textLength];
+        buffer.asCharBuffer().get(text);
+
+        final List<String> rows = new ArrayList<>(count);
+        for (int row = 0; row < count; row++) {
+            final String title = new String(text, starts[row << 1],
+                    starts[(row << 1) + 1] - starts[row << 1]);
+            final String subtitle = (flags[row >>> 5] & (1 << (row & 31))) != 0
+                    ? new String(text, starts[(row << 1) + 1], starts[(row << 1) + 2] - starts[(row << 1) + 1])
+                    : null;
+            rows.add(ids[row] + "|" + title + "|" + subtitle);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,86 @@
+package com.tylersuehr.chips.tool;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Tests {@link CsvRowReader}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class CsvRowReaderTest {
+    @Test
+    public void readInto_readsRows() throws IOException {
+        assertEquals(
+                Arrays.asList("1|Alice|alice@example.com", "2|Bob|null", "3|Carol|null"),
+                CatalogRows.readCsv("1,Alice,alice@example.com\n2,Bob\n3,Carol,\n"));
+    }
+
+    @Test
+    public void readInto_skipsHeader() throws IOException {
+        assertEquals(
+                Collections.singletonList("1|Alice|null"),
+                CatalogRows.readCsv("id,title,subtitle\n1,Alice\n"));
+    }
+
+    @Test
+    public void readInto_skipsBlankLines() throws IOException {
+        assertEquals(
+                Arrays.asList("1|Alice|null", "2|Bob|null"),
+                CatalogRows.readCsv("\n1,Alice\n\n2,Bob"));
+    }
+
+    @Test
+    public void readInto_readsCrLfLines() throws IOException {
+        assertEquals(
+                Arrays.asList("1|Alice|a", "2|Bob|b"),
+                CatalogRows.readCsv("1,Alice,a\r\n2,Bob,b\r\n"));
+    }
+
+    @Test
+    public void readInto_readsQuotedFields() throws IOException {
+        assertEquals(
+                Arrays.asList("1|Smith, Alice|Says \"hi\"", "2|Two\nlines|null", "-3|Bob|null"),
+                CatalogRows.readCsv("1,\"Smith, Alice\",\"Says \"\"hi\"\"\"\n"
+                        + "2,\"Two\nlines\"\n"
+                        + " -3 ,Bob\n"));
+    }
+
+    @Test
+    public void readInto_readsNonAsciiText() throws IOException {
+        assertEquals(
+                Collections.singletonList("1|Zoë Ünïcödé|✓"),
+                CatalogRows.readCsv("1,Zoë Ünïcödé,✓\n"));
+    }
+
+    @Test
+    public void readInto_rejectsBadIdAfterFirstRecord() {
+        assertIOException("Line 3: id isn't a number: x", "1,Alice\n2,Bob\nx,Carol\n");
+    }
+
+    @Test
+    public void readInto_rejectsMissingTitle() {
+        assertIOException("Line 2: expected id and title", "1,Alice\n2\n");
+    }
+
+    @Test
+    public void readInto_rejectsUnterminatedQuote() {
+        assertIOException("Line 2: unterminated quote", "1,Alice\n2,\"Bob\n");
+    }
+
+    private static void assertIOException(String message, String csv) {
+        try {
+            CatalogRows.readCsv(csv);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
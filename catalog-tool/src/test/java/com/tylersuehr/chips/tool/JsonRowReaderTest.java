@@ -0,0 +1,81 @@
+package com.tylersuehr.chips.tool;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Tests {@link JsonRowReader}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class JsonRowReaderTest {
+    @Test
+    public void readInto_readsRows() throws IOException {
+        assertEquals(
+                Arrays.asList("1|Alice|alice@example.com", "2|Bob|null", "-3|Carol|null"),
+                CatalogRows.readJson("[\n"
+                        + "  {\"id\": 1, \"title\": \"Alice\", \"subtitle\": \"alice@example.com\"},\n"
+                        + "  {\"title\": \"Bob\", \"id\": 2},\n"
+                        + "  {\"id\": -3, \"title\": \"Carol\", \"subtitle\": null}\n"
+                        + "]"));
+    }
+
+    @Test
+    public void readInto_readsEmptyArray() throws IOException {
+        assertEquals(Collections.<String>emptyList(), CatalogRows.readJson(" [ ] "));
+    }
+
+    @Test
+    public void readInto_readsStringIds() throws IOException {
+        assertEquals(
+                Collections.singletonList("9007199254740993|Alice|null"),
+                CatalogRows.readJson("[{\"id\": \"9007199254740993\", \"title\": \"Alice\"}]"));
+    }
+
+    @Test
+    public void readInto_readsEscapes() throws IOException {
+        assertEquals(
+                Collections.singletonList("1|Say \"hi\"\\/\n\t|Zo\u00eb \u2713"),
+                CatalogRows.readJson("[{\"id\": 1, \"title\": \"Say \\\"hi\\\"\\\\\\/\\n\\t\","
+                        + " \"subtitle\": \"Zo\\u00eb \\u2713\"}]"));
+    }
+
+    @Test
+    public void readInto_skipsOtherKeys() throws IOException {
+        assertEquals(
+                Collections.singletonList("1|Alice|null"),
+                CatalogRows.readJson("[{\"avatar\": {\"url\": \"a,b}\", \"sizes\": [1, [2], 3]},"
+                        + " \"id\": 1, \"tags\": [\"x\", \"]\"], \"starred\": true, \"title\": \"Alice\"}]"));
+    }
+
+    @Test
+    public void readInto_rejectsMissingTitle() {
+        assertIOException("Line 2: expected id and title", "[{\"id\": 1, \"title\": \"Alice\"},\n{\"id\": 2}]");
+    }
+
+    @Test
+    public void readInto_rejectsBadId() {
+        assertIOException("Line 1: id isn't a number: abc", "[{\"id\": \"abc\", \"title\": \"Alice\"}]");
+    }
+
+    @Test
+    public void readInto_rejectsTruncatedInput() {
+        assertIOException("Line 1: unexpected end of input", "[{\"id\": 1, \"title\": \"Ali");
+    }
+
+    private static void assertIOException(String message, String json) {
+        try {
+            CatalogRows.readJson(json);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
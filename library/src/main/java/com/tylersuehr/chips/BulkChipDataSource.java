@@ -0,0 +1,25 @@
+package com.tylersuehr.chips;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Defines a {@link ChipDataSource} that can select many chips at once.
+ *
+ * This is used to select chips again (like when undoing a change, or restoring the
+ * selected chips) with one change notification, instead of one for each chip. Data
+ * sources that don't implement this have their chips selected one at a time.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public interface BulkChipDataSource extends ChipDataSource {
+    /**
+     * Selects all the given chips at once, with one change notification. Chips in the
+     * filtered chips are taken from them, others are just added to the selected chips,
+     * and chips that are already selected are skipped.
+     *
+     * @param chips List of {@link Chip}
+     */
+    void takeChips(List<? extends Chip> chips);
+}
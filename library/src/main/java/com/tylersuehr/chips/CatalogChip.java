@@ -0,0 +1,75 @@
+package com.tylersuehr.chips;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Subclass of {@link Chip} that reads a row of a {@link ChipCatalog} that only stores
+ * the id, title, and subtitle of each row (like {@link CompactChipCatalog}). These are
+ * created when a row is needed, and only hold the row and its catalog.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class CatalogChip extends Chip {
+    private final ChipCatalog mCatalog;
+    private final int mRow;
+    private final long mId;
+    private String mTitle;
+
+
+    CatalogChip(ChipCatalog catalog, int row, long id) {
+        mCatalog = catalog;
+        mRow = row;
+        mId = id;
+    }
+
+    /**
+     * Gets the row of this chip in the given catalog.
+     *
+     * @param chip {@link Chip}
+     * @param catalog {@link ChipCatalog}
+     * @return Row of the chip, or -1 if it's not from the catalog
+     */
+    static int rowIn(Chip chip, ChipCatalog catalog) {
+        return chip instanceof CatalogChip && ((CatalogChip)chip).mCatalog == catalog
+                ? ((CatalogChip)chip).mRow : -1;
+    }
+
+    @Nullable
+    @Override
+    public Object getId() {
+        return mId;
+    }
+
+    @NonNull
+    @Override
+    public String getTitle() {
+        if (mTitle == null) {
+            mTitle = mCatalog.getTitle(mRow).toString();
+        }
+        return mTitle;
+    }
+
+    @Nullable
+    @Override
+    public String getSubtitle() {
+        final CharSequence subtitle = mCatalog.getSubtitle(mRow);
+        return subtitle != null ? subtitle.toString() : null;
+    }
+
+    @Nullable
+    @Override
+    public Uri getAvatarUri() {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Drawable getAvatarDrawable() {
+        return null;
+    }
+}
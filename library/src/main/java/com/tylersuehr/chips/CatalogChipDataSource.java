@@ -0,0 +1,564 @@
+package com.tylersuehr.chips;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Subclass of {@link ObservableChipDataSource} that uses a {@link ChipCatalog} for
+ * its filterable chips, and only keeps track of which rows of it are selected.
+ *
+ * The catalog creates chips as they are needed, so the filtered and original chip
+ * lists returned by this are views of the catalog that create a chip when it's
+ * accessed. Searching matches the text of each row, and only creates chips for the
+ * rows that match.
+ *
+ * Chips that don't come from the catalog (like custom chips, or chips added using
+ * {@link #addFilteredChip(Chip)}) are kept as objects, as usual. Selected chips are
+ * kept in the order they were selected.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class CatalogChipDataSource extends ObservableChipDataSource
+        implements SearchableChipDataSource, BulkChipDataSource {
+    /* Guards the state read by searching, which happens on another thread */
+    private final Object mLock = new Object();
+
+    /* Catalog of filterable chips */
+    private ChipCatalog mCatalog;
+    /* Index of the catalog used for searching, if any */
+    private ChipSearchIndex mSearchIndex;
+    /* Rows of the catalog that are selected */
+    private final BitSet mSelectedRows = new BitSet();
+    private int mSelectedRowCount;
+    /* Cached selected rows of the catalog, in order, or null if invalid */
+    private int[] mSortedSelectedRows;
+
+    /* Filterable chips that aren't in the catalog */
+    private final Set<Chip> mExtras = new LinkedHashSet<>();
+    private List<Chip> mExtrasList;
+
+    /* Aggregation of all selected chips, selected by the user */
+    private final List<Chip> mSelected = new ArrayList<>();
+    private final Set<Chip> mSelectedSet = new HashSet<>();
+
+    /* Views of the filterable chips */
+    private final List<Chip> mFilteredView = new FilteredChipList();
+    private final List<Chip> mSelectedView = Collections.unmodifiableList(mSelected);
+
+
+    public CatalogChipDataSource(@NonNull ChipCatalog catalog) {
+        if (catalog == null) {
+            throw new NullPointerException("Catalog cannot be null!");
+        }
+        mCatalog = catalog;
+    }
+
+    /**
+     * Changes the catalog used for filterable chips, such as when its cursor has
+     * been reloaded. Selected chips stay selected. The ones the new catalog can find
+     * (see {@link ChipCatalog#indexOf(Chip)}) aren't filterable in it; a catalog that
+     * can't find chips it didn't create, by their id, shows those chips again.
+     *
+     * @param catalog {@link ChipCatalog}
+     */
+    public void setCatalog(@NonNull ChipCatalog catalog) {
+        if (catalog == null) {
+            throw new NullPointerException("Catalog cannot be null!");
+        }
+        synchronized (mLock) {
+            mCatalog = catalog;
+            mSearchIndex = null;
+            mSelectedRows.clear();
+            mSelectedRowCount = 0;
+            for (Chip chip : mSelected) {
+                final int row = catalog.indexOf(chip);
+                if (row > -1 && !mSelectedRows.get(row)) {
+                    mSelectedRows.set(row);
+                    mSelectedRowCount++;
+                }
+            }
+            mSortedSelectedRows = null;
+        }
+        notifyDataSourceChanged();
+    }
+
+    public ChipCatalog getCatalog() {
+        return mCatalog;
+    }
+
+    /**
+     * Sets the index used to search the current catalog, so only the rows that could
+     * match are matched. The index is dropped when the catalog changes.
+     *
+     * @param index {@link ChipSearchIndex} of the current catalog, or null for none
+     */
+    public void setSearchIndex(@Nullable ChipSearchIndex index) {
+        synchronized (mLock) {
+            if (index != null && index.getRowCount() != mCatalog.getCount()) {
+                throw new IllegalArgumentException("Search index is not for this catalog!");
+            }
+            mSearchIndex = index;
+        }
+    }
+
+    @Override
+    public List<Chip> getSelectedChips() {
+        return mSelectedView;
+    }
+
+    @Override
+    public List<Chip> getFilteredChips() {
+        return mFilteredView;
+    }
+
+    @Override
+    public List<Chip> getOriginalChips() {
+        // Selected chips are never filterable, so these are the same
+        return mFilteredView;
+    }
+
+    @Override
+    public Chip getFilteredChip(int position) {
+        return mFilteredView.get(position);
+    }
+
+    @Override
+    public Chip getSelectedChip(int position) {
+        return mSelected.get(position);
+    }
+
+    @Override
+    public List<Chip> search(String pattern) {
+        // Copy what we need, so rows can be matched without holding the lock
+        final ChipCatalog catalog;
+        final ChipSearchIndex index;
+        final BitSet selectedRows;
+        final List<Chip> extras;
+        synchronized (mLock) {
+            catalog = mCatalog;
+            index = mSearchIndex;
+            selectedRows = (BitSet)mSelectedRows.clone();
+            extras = new ArrayList<>(mExtras);
+        }
+
+        final List<Chip> matches = new ArrayList<>();
+        final int[] candidates = index != null ? index.candidates(pattern) : null;
+        if (candidates != null) {
+            for (int row : candidates) {
+                if (!selectedRows.get(row) && catalog.matches(row, pattern)) {
+                    matches.add(filterable(catalog.getChip(row)));
+                }
+            }
+        } else {
+            final int count = catalog.getCount();
+            for (int row = selectedRows.nextClearBit(0); row < count; row = selectedRows.nextClearBit(row + 1)) {
+                if (catalog.matches(row, pattern)) {
+                    matches.add(filterable(catalog.getChip(row)));
+                }
+            }
+        }
+        for (Chip chip : extras) {
+            if (Utils.matchesFilter(chip.getTitle(), chip.getSubtitle(), pattern)) {
+                matches.add(chip);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    public void setFilterableChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        synchronized (mLock) {
+            for (Chip chip : chips) {
+                chip.setFilterable(true);
+                if (mCatalog.indexOf(chip) < 0) {
+                    mExtras.add(chip);
+                }
+            }
+            mExtrasList = null;
+        }
+        notifyDataSourceChanged();
+    }
+
+    @Override
+    public void addFilteredChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        chip.setFilterable(true);
+        synchronized (mLock) {
+            if (mCatalog.indexOf(chip) < 0) {
+                mExtras.add(chip);
+                mExtrasList = null;
+            }
+        }
+        notifyDataSourceChanged();
+    }
+
+    @Override
+    public void addSelectedChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        synchronized (mLock) {
+            select(chip);
+        }
+        notifyDataSourceChanged();
+        notifyChipSelected(chip);
+    }
+
+    @Override
+    public void removeSelectedChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        final boolean removed;
+        synchronized (mLock) {
+            removed = mSelectedSet.remove(chip);
+            if (removed) {
+                mSelected.remove(chip);
+                unselectRow(mCatalog.indexOf(chip));
+            }
+        }
+        notifyDataSourceChanged();
+        if (removed) {
+            notifyChipUnselected(chip);
+        }
+    }
+
+    @Override
+    public void setSelectedChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        synchronized (mLock) {
+            mSelected.clear();
+            mSelectedSet.clear();
+            mSelectedRows.clear();
+            mSelectedRowCount = 0;
+            mSortedSelectedRows = null;
+            for (Chip chip : chips) {
+                select(chip);
+            }
+        }
+        notifyDataSourceChanged();
+    }
+
+    @Override
+    public void takeChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        if (!existsInFiltered(chip)) {
+            throw new IllegalArgumentException("Chip is not in filtered chip list!");
+        }
+        synchronized (mLock) {
+            take(chip);
+        }
+        notifyDataSourceChanged();
+        notifyChipSelected(chip);
+    }
+
+    @Override
+    public void takeChip(int position) {
+        final Chip foundChip = mFilteredView.get(position);
+        synchronized (mLock) {
+            take(foundChip);
+        }
+        notifyDataSourceChanged();
+        notifyChipSelected(foundChip);
+    }
+
+    @Override
+    public void takeChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        final List<Chip> taken = new ArrayList<>(chips.size());
+        synchronized (mLock) {
+            for (Chip chip : chips) {
+                if (!mSelectedSet.contains(chip)) {
+                    take(chip);
+                    taken.add(chip);
+                }
+            }
+        }
+
+        notifyDataSourceChanged();
+        for (Chip chip : taken) {
+            notifyChipSelected(chip);
+        }
+    }
+
+    @Override
+    public void replaceChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        if (!mSelectedSet.contains(chip)) {
+            throw new IllegalArgumentException("Chip is not in selected chip list!");
+        }
+        synchronized (mLock) {
+            replace(chip);
+        }
+        notifyDataSourceChanged();
+        notifyChipUnselected(chip);
+    }
+
+    @Override
+    public void replaceChip(int position) {
+        final Chip foundChip = mSelected.get(position);
+        synchronized (mLock) {
+            replace(foundChip);
+        }
+        notifyDataSourceChanged();
+        notifyChipUnselected(foundChip);
+    }
+
+    @Override
+    public void clearFilteredChips() {
+        synchronized (mLock) {
+            mCatalog = EmptyCatalog.INSTANCE;
+            mSearchIndex = null;
+            mSelectedRows.clear();
+            mSelectedRowCount = 0;
+            mSortedSelectedRows = null;
+            mExtras.clear();
+            mExtrasList = null;
+        }
+        notifyDataSourceChanged();
+    }
+
+    @Override
+    public void clearSelectedChips() {
+        // Since we want to tell observers that chips have been unselected,
+        // we need to store a clone of the selected list of chips
+        final List<Chip> clone = new ArrayList<>(mSelected);
+        synchronized (mLock) {
+            mSelected.clear();
+            mSelectedSet.clear();
+            mSelectedRows.clear();
+            mSelectedRowCount = 0;
+            mSortedSelectedRows = null;
+        }
+
+        notifyDataSourceChanged();
+        for (Chip chip : clone) {
+            notifyChipUnselected(chip);
+        }
+    }
+
+    @Override
+    public boolean existsInFiltered(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        final int row = mCatalog.indexOf(chip);
+        return row > -1 ? !mSelectedRows.get(row) : mExtras.contains(chip);
+    }
+
+    @Override
+    public boolean existsInSelected(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        return mSelectedSet.contains(chip);
+    }
+
+    @Override
+    public boolean existsInDataSource(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        return (mCatalog.indexOf(chip) > -1
+                || mExtras.contains(chip)
+                || mSelectedSet.contains(chip));
+    }
+
+    /* Must be called while holding mLock */
+    private void select(Chip chip) {
+        if (mSelectedSet.add(chip)) {
+            mSelected.add(chip);
+            final int row = mCatalog.indexOf(chip);
+            if (row > -1 && !mSelectedRows.get(row)) {
+                mSelectedRows.set(row);
+                mSelectedRowCount++;
+                mSortedSelectedRows = null;
+            }
+        }
+    }
+
+    /* Must be called while holding mLock */
+    private void take(Chip chip) {
+        if (mExtras.remove(chip)) {
+            mExtrasList = null;
+        }
+        select(chip);
+    }
+
+    /* Must be called while holding mLock */
+    private void replace(Chip chip) {
+        mSelectedSet.remove(chip);
+        mSelected.remove(chip);
+
+        final int row = mCatalog.indexOf(chip);
+        if (row > -1) {
+            unselectRow(row);
+        } else if (chip.isFilterable()) {
+            mExtras.add(chip);
+            mExtrasList = null;
+        }
+    }
+
+    /* Must be called while holding mLock */
+    private void unselectRow(int row) {
+        if (row > -1 && mSelectedRows.get(row)) {
+            mSelectedRows.clear(row);
+            mSelectedRowCount--;
+            mSortedSelectedRows = null;
+        }
+    }
+
+    private static Chip filterable(Chip chip) {
+        chip.setFilterable(true);
+        return chip;
+    }
+
+
+    /**
+     * Nested inner-subclass of {@link AbstractList} that's a view of all the rows of
+     * the catalog that aren't selected, followed by the other filterable chips.
+     *
+     * While no rows are selected, positions map to rows directly. Otherwise, the few
+     * selected rows are collected in order the first time they're needed, and each
+     * one at or before a position shifts it to the next row. Finding the position of
+     * a chip does the opposite, without creating any chips.
+     */
+    private final class FilteredChipList extends AbstractList<Chip> {
+        @Override
+        public Chip get(int position) {
+            final int rowCount = mCatalog.getCount() - mSelectedRowCount;
+            if (position < 0 || position >= size()) {
+                throw new IndexOutOfBoundsException("Position " + position + ", size " + size());
+            }
+            if (position >= rowCount) {
+                if (mExtrasList == null) {
+                    mExtrasList = new ArrayList<>(mExtras);
+                }
+                return mExtrasList.get(position - rowCount);
+            }
+            if (mSelectedRowCount == 0) {
+                return filterable(mCatalog.getChip(position));
+            }
+
+            int row = position;
+            for (int selectedRow : sortedSelectedRows()) {
+                if (selectedRow > row) { break; }
+                row++;
+            }
+            return filterable(mCatalog.getChip(row));
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            if (!(o instanceof Chip)) { return -1; }
+            final int row = mCatalog.indexOf((Chip)o);
+            if (row > -1) {
+                if (mSelectedRows.get(row)) { return -1; }
+
+                int position = row;
+                for (int selectedRow : sortedSelectedRows()) {
+                    if (selectedRow > row) { break; }
+                    position--;
+                }
+                return position;
+            }
+
+            if (!mExtras.contains(o)) { return -1; }
+            if (mExtrasList == null) {
+                mExtrasList = new ArrayList<>(mExtras);
+            }
+            return mCatalog.getCount() - mSelectedRowCount + mExtrasList.indexOf(o);
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            // Rows and extras are all different chips
+            return indexOf(o);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return indexOf(o) > -1;
+        }
+
+        @Override
+        public int size() {
+            return mCatalog.getCount() - mSelectedRowCount + mExtras.size();
+        }
+
+        private int[] sortedSelectedRows() {
+            if (mSortedSelectedRows == null) {
+                final int[] rows = new int[mSelectedRowCount];
+                int i = 0;
+                for (int row = mSelectedRows.nextSetBit(0); row > -1; row = mSelectedRows.nextSetBit(row + 1)) {
+                    rows[i++] = row;
+                }
+                mSortedSelectedRows = rows;
+            }
+            return mSortedSelectedRows;
+        }
+    }
+
+
+    /**
+     * Implementation of {@link ChipCatalog} that has no rows.
+     */
+    private static final class EmptyCatalog implements ChipCatalog {
+        static final EmptyCatalog INSTANCE = new EmptyCatalog();
+
+        @Override
+        public int getCount() {
+            return 0;
+        }
+
+        @NonNull
+        @Override
+        public Chip getChip(int row) {
+            throw new IndexOutOfBoundsException("Catalog is empty!");
+        }
+
+        @Override
+        public int indexOf(@NonNull Chip chip) {
+            return -1;
+        }
+
+        @NonNull
+        @Override
+        public CharSequence getTitle(int row) {
+            throw new IndexOutOfBoundsException("Catalog is empty!");
+        }
+
+        @Override
+        public CharSequence getSubtitle(int row) {
+            throw new IndexOutOfBoundsException("Catalog is empty!");
+        }
+
+        @Override
+        public boolean matches(int row, String pattern) {
+            throw new IndexOutOfBoundsException("Catalog is empty!");
+        }
+    }
+}
@@ -86,17 +86,15 @@ public abstract class Chip {
             return false;
         }
 
-        Chip chip = (Chip) o;
-
-        return chip.getId().equals(getId());
+        // Chips without an id are only equal to themselves
+        final Object id = getId();
+        return id != null && id.equals(((Chip) o).getId());
     }
 
     @Override
     public int hashCode() {
-        int result = 17;
-        result = 31 * result + getId().hashCode();
-        result = 31 * result + getTitle().hashCode();
-        result = 31 * result + getSubtitle().hashCode();
-        return result;
+        // Only uses the id, so that it stays consistent with equals
+        final Object id = getId();
+        return id != null ? 17 * 31 + id.hashCode() : System.identityHashCode(this);
     }
 }
\ No newline at end of file
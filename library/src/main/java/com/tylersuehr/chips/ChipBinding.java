@@ -0,0 +1,119 @@
+package com.tylersuehr.chips;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.text.TextUtils;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Remembers what a view holder is displaying of a chip, so that binding it again only
+ * updates the parts of the chip that changed, like just its subtitle or avatar.
+ *
+ * The displayed values are kept, rather than only the chip, so a chip that was changed
+ * in place is still noticed.
+ *
+ * This also creates and reads the change payloads adapters pass to
+ * {@code notifyItemChanged}, for when parts of a chip must be displayed again even
+ * though they look the same (like an avatar reloaded from the same uri).
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipBinding {
+    /* Payload for a change to the style of every chip */
+    static final Object STYLE_PAYLOAD = new Change(null, ChipDataSource.CHANGE_STYLE);
+    /* Parts displayed again when a holder displays another chip */
+    private static final int CHANGE_CHIP = ChipDataSource.CHANGE_TITLE
+            | ChipDataSource.CHANGE_SUBTITLE | ChipDataSource.CHANGE_AVATAR;
+
+    private Chip mChip;
+    private String mTitle;
+    private String mSubtitle;
+    private Uri mAvatarUri;
+    private Drawable mAvatarDrawable;
+
+
+    /**
+     * Remembers the given chip as the one being displayed.
+     *
+     * @param chip {@link Chip} to display
+     * @return Parts of the chip that changed since it was last displayed
+     */
+    int update(Chip chip) {
+        final String title = chip.getTitle();
+        final String subtitle = chip.getSubtitle();
+        final Uri avatarUri = chip.getAvatarUri();
+        final Drawable avatarDrawable = chip.getAvatarDrawable();
+
+        int changes;
+        if (mChip == null || !ChipListDiffer.isSameChip(mChip, chip)) {
+            changes = CHANGE_CHIP;
+        } else {
+            changes = 0;
+            if (!TextUtils.equals(mTitle, title)) {
+                changes |= ChipDataSource.CHANGE_TITLE;
+            }
+            if (!TextUtils.equals(mSubtitle, subtitle)) {
+                changes |= ChipDataSource.CHANGE_SUBTITLE;
+            }
+            if ((mAvatarUri == null ? avatarUri != null : !mAvatarUri.equals(avatarUri))
+                    || mAvatarDrawable != avatarDrawable) {
+                changes |= ChipDataSource.CHANGE_AVATAR;
+            }
+        }
+
+        mChip = chip;
+        mTitle = title;
+        mSubtitle = subtitle;
+        mAvatarUri = avatarUri;
+        mAvatarDrawable = avatarDrawable;
+        return changes;
+    }
+
+    /**
+     * Creates the payload of a change to some parts of the given chip.
+     *
+     * @param chip {@link Chip} that changed
+     * @param changes Parts that changed
+     * @return Payload
+     */
+    static Object payload(Chip chip, int changes) {
+        return new Change(chip, changes);
+    }
+
+    /**
+     * Gets the parts of the given chip that the given payloads changed.
+     *
+     * @param payloads Payloads passed to {@code onBindViewHolder}
+     * @param chip {@link Chip} being bound
+     * @return Parts that changed
+     */
+    static int changesOf(List<Object> payloads, Chip chip) {
+        int changes = 0;
+        for (Object payload : payloads) {
+            if (payload instanceof Change) {
+                final Change change = (Change)payload;
+                if (change.chip == null || ChipListDiffer.isSameChip(change.chip, chip)) {
+                    changes |= change.changes;
+                }
+            }
+        }
+        return changes;
+    }
+
+
+    /**
+     * Nested class that's a payload of a change to some parts of a chip, or of every
+     * chip if it has no chip.
+     */
+    private static final class Change {
+        final Chip chip;
+        final int changes;
+
+        Change(Chip chip, int changes) {
+            this.chip = chip;
+            this.changes = changes;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.tylersuehr.chips;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Defines a fixed set of filterable chips that can be accessed by row.
+ *
+ * Unlike the chips given to {@link ChipDataSource#setFilterableChips(java.util.List)},
+ * a catalog doesn't need to keep its chips as objects. It only needs to create the
+ * chip of a row when asked for it (like when it's being displayed), and provide the
+ * text of a row so that it can be searched.
+ *
+ * A catalog doesn't know which of its chips are selected, that's tracked by the
+ * {@link CatalogChipDataSource} using it.
+ *
+ * Note: all methods may be called from any thread.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public interface ChipCatalog {
+    /**
+     * @return Number of rows in this catalog
+     */
+    int getCount();
+
+    /**
+     * Gets, or creates, the chip for the given row.
+     *
+     * @param row Row of the chip
+     * @return {@link Chip}
+     */
+    @NonNull
+    Chip getChip(int row);
+
+    /**
+     * Gets the row of the given chip, if it came from this catalog, or if this can
+     * find a row with the same id (like a chip from an older version of this catalog).
+     *
+     * @param chip {@link Chip}
+     * @return Row of the chip, or -1 if not in this catalog
+     */
+    int indexOf(@NonNull Chip chip);
+
+    /**
+     * Gets the title of the given row, without creating its chip.
+     *
+     * @param row Row of the chip
+     * @return Title of the chip
+     */
+    @NonNull
+    CharSequence getTitle(int row);
+
+    /**
+     * Gets the subtitle of the given row, without creating its chip.
+     *
+     * @param row Row of the chip
+     * @return Subtitle of the chip, if any
+     */
+    @Nullable
+    CharSequence getSubtitle(int row);
+
+    /**
+     * Checks if the given row matches the given filter pattern, without creating its
+     * chip. A row matches if its title contains the pattern, or its subtitle contains
+     * the pattern when ignoring whitespace.
+     *
+     * @param row Row of the chip
+     * @param pattern Lowercase, trimmed text the user has input
+     * @return True if the row matches
+     */
+    boolean matches(int row, String pattern);
+
+
+    /**
+     * Defines a catalog whose chips have number ids, and that can find the row of
+     * an id without creating any chips (like when restoring selected chips).
+     */
+    interface IdIndex {
+        /**
+         * @param id Id of the chip
+         * @return Row of the chip with the id, or -1 if not in this catalog
+         */
+        int indexOfId(long id);
+    }
+
+
+    /**
+     * Defines a catalog that knows a version of its rows, which changes whenever their
+     * text does, so a cache of something built from it (like its search index) doesn't
+     * need to read every row to know if the catalog changed.
+     */
+    interface Versioned {
+        /**
+         * @return Version of the rows, or 0 if it isn't known
+         */
+        long getVersion();
+    }
+}
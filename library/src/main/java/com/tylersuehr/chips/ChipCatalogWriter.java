@@ -0,0 +1,143 @@
+package com.tylersuehr.chips;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Writes the file read by {@link MappedChipCatalog}, so a very large catalog can be
+ * built ahead of time (like when building the app) rather than parsed at startup.
+ *
+ * This only uses plain Java, so it can also be used by tools that run on a desktop JVM.
+ *
+ * The file is little-endian, and has these sections in order:
+ * (1) Header: magic, version, number of rows, and number of chars of text.
+ * (2) Ids: the id of each row, as longs.
+ * (3) Starts: the start of each row's title (2 * row) and subtitle (2 * row + 1)
+ *     in the text, as ints, followed by the end of the text.
+ * (4) Sorted keys: the rows sorted by their id, as ints.
+ * (5) Subtitle flags: a bit for each row that has a subtitle, as ints.
+ * (6) Text: the titles and subtitles of every row, as UTF-16 chars.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public final class ChipCatalogWriter {
+    /* "CHIP" when read as little-endian bytes */
+    public static final int MAGIC = 0x50494843;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ChipRowBuffer mRows = new ChipRowBuffer(16);
+
+
+    /**
+     * Adds a row to the catalog.
+     *
+     * @param id Id of the chip, must be unique
+     * @param title Title of the chip
+     * @param subtitle Subtitle of the chip, if any
+     * @return This {@link ChipCatalogWriter}
+     */
+    public ChipCatalogWriter add(long id, CharSequence title, CharSequence subtitle) {
+        mRows.add(id, title, subtitle);
+        return this;
+    }
+
+    public int getCount() {
+        return mRows.getCount();
+    }
+
+    /**
+     * Writes the catalog to the given file, replacing it if it exists.
+     *
+     * @param file {@link File}
+     * @throws IOException If the file couldn't be written
+     */
+    public void writeTo(File file) throws IOException {
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            writeTo(out.getChannel());
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the catalog to the given channel.
+     *
+     * @param channel {@link WritableByteChannel}
+     * @throws IOException If the channel couldn't be written
+     * @throws IllegalStateException If two rows have the same id
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        final int count = mRows.getCount();
+        final int textLength = mRows.getTextLength();
+        final long[] ids = mRows.getIds();
+        final char[] text = mRows.getText();
+        final int[] rowsById = sortRowsById();
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(count);
+        buffer.putInt(textLength);
+        for (int i = 0; i < count; i++) {
+            ensureRemaining(channel, buffer, 8);
+            buffer.putLong(ids[i]);
+        }
+        writeInts(channel, buffer, mRows.getStarts(), (count << 1) + 1);
+        writeInts(channel, buffer, rowsById, count);
+        writeInts(channel, buffer, mRows.getSubtitleFlags(), flagsLength(count));
+        for (int i = 0; i < textLength; i++) {
+            ensureRemaining(channel, buffer, 2);
+            buffer.putChar(text[i]);
+        }
+        flush(channel, buffer);
+    }
+
+    /* Number of ints needed for the subtitle flags of the given number of rows */
+    static int flagsLength(int count) {
+        return ChipRowBuffer.flagsLength(count);
+    }
+
+    private int[] sortRowsById() {
+        final long[] ids = mRows.getIds();
+        final int[] sorted = ChipRowBuffer.sortedOrder(ids, mRows.getCount());
+        for (int i = 1; i < sorted.length; i++) {
+            if (ids[sorted[i]] == ids[sorted[i - 1]]) {
+                throw new IllegalStateException("Duplicate id: " + ids[sorted[i]]);
+            }
+        }
+        return sorted;
+    }
+
+    private static void writeInts(WritableByteChannel channel, ByteBuffer buffer, int[] values, int length)
+            throws IOException {
+        for (int i = 0; i < length; i++) {
+            ensureRemaining(channel, buffer, 4);
+            buffer.putInt(values[i]);
+        }
+    }
+
+    private static void ensureRemaining(WritableByteChannel channel, ByteBuffer buffer, int size)
+            throws IOException {
+        if (buffer.remaining() < size) {
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
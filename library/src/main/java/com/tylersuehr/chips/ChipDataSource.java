@@ -31,6 +31,12 @@ import java.util.List;
  * @version 1.0
  */
 public interface ChipDataSource {
+    /* Parts of a chip that can change, for ChipChangeObserver */
+    int CHANGE_TITLE = 1;
+    int CHANGE_SUBTITLE = 1 << 1;
+    int CHANGE_AVATAR = 1 << 2;
+    int CHANGE_STYLE = 1 << 3;
+
     List<Chip> getSelectedChips();
     List<Chip> getFilteredChips();
     List<Chip> getOriginalChips();
@@ -77,6 +83,23 @@ public interface ChipDataSource {
         void onChipDataSourceChanged();
     }
 
+    /**
+     * Defines a change observer that also wants to know when only some parts of
+     * a chip changed (like its avatar), so it can update just those.
+     *
+     * Change observers that don't implement this are notified about those changes
+     * as any other change to this data source.
+     */
+    interface ChipChangeObserver extends ChangeObserver {
+        /**
+         * Called when some parts of the given chip changed.
+         *
+         * @param chip {@link Chip} that changed
+         * @param changes Parts that changed, like {@link #CHANGE_AVATAR}
+         */
+        void onChipChanged(Chip chip, int changes);
+    }
+
     /**
      * Defines an observer that wants to observe changes to individual
      * chip selection events.
@@ -0,0 +1,82 @@
+package com.tylersuehr.chips;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Maps chips to stable {@code long} ids for an adapter, derived from their ids.
+ *
+ * Chips with non-negative {@code Long} ids (like catalog rows) use their id as-is, so
+ * nothing needs to be stored for them. Every other chip id (strings, negative numbers,
+ * or other objects) is given the next unused negative id, so no two different chip ids
+ * ever get the same stable id. Chips without an id are mapped by identity.
+ *
+ * {@link #INPUT_ID} and {@link #SUMMARY_ID} are reserved for the input and summary
+ * items; -1 is never used, since it's {@code RecyclerView.NO_ID}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipIdMap {
+    /* Stable id of the input (EditText) item, which no chip can have */
+    static final long INPUT_ID = Long.MIN_VALUE;
+    /* Stable id of the summary ("+N") item of collapsed chips, which no chip can have */
+    static final long SUMMARY_ID = Long.MIN_VALUE + 1;
+
+    private Map<Object, Long> mIds = new HashMap<>();
+    private Map<Chip, Long> mIdentityIds = new IdentityHashMap<>();
+    /* Next id given to a chip that doesn't use its own id */
+    private long mNextId = -2;
+
+
+    long getId(Chip chip) {
+        final Object id = chip.getId();
+        if (id instanceof Long && (Long)id >= 0) {
+            return (Long)id;
+        }
+
+        Long stableId = id != null ? mIds.get(id) : mIdentityIds.get(chip);
+        if (stableId == null) {
+            stableId = mNextId--;
+            if (id != null) {
+                mIds.put(id, stableId);
+            } else {
+                mIdentityIds.put(chip, stableId);
+            }
+        }
+        return stableId;
+    }
+
+    /**
+     * Forgets the ids of chips that aren't in the given ones, once there are many more
+     * ids stored than chips, so ids don't pile up over a long session. The ids of the
+     * given chips stay the same.
+     *
+     * @param chips Chips being displayed
+     * @param count Number of chips being displayed
+     */
+    void trim(Iterable<? extends Chip> chips, int count) {
+        if (mIds.size() + mIdentityIds.size() <= (count << 1) + 32) { return; }
+
+        final Map<Object, Long> keptIds = new HashMap<>();
+        final Map<Chip, Long> keptIdentityIds = new IdentityHashMap<>();
+        for (Chip chip : chips) {
+            final Object id = chip.getId();
+            if (id != null) {
+                final Long stableId = mIds.get(id);
+                if (stableId != null) {
+                    keptIds.put(id, stableId);
+                }
+            } else {
+                final Long stableId = mIdentityIds.get(chip);
+                if (stableId != null) {
+                    keptIdentityIds.put(chip, stableId);
+                }
+            }
+        }
+        mIds = keptIds;
+        mIdentityIds = keptIdentityIds;
+    }
+}
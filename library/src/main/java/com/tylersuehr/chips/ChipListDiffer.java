@@ -0,0 +1,176 @@
+package com.tylersuehr.chips;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Keeps the list of chips an adapter is displaying, and updates it to new lists by
+ * diffing them (Myers' algorithm, using {@link DiffUtil}) on a background thread, then
+ * dispatching only the items that changed to the adapter on the main thread.
+ *
+ * Chips are the same item if they have the same id, so a whole new list of chips (like
+ * after a sync) animates and recycles views properly, instead of rebinding everything.
+ *
+ * Lists are diffed in the order they're submitted; a diff that finishes after a newer
+ * list was submitted is dropped. This must be used on the main thread.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipListDiffer {
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final RecyclerView.Adapter<?> mAdapter;
+    /* Called after updates have been dispatched to the adapter, if not null */
+    private final Runnable mOnDispatched;
+
+    /* Chips being displayed by the adapter */
+    private List<Chip> mList = Collections.emptyList();
+    /* Incremented for every list, so older diffs can be dropped */
+    private int mGeneration;
+
+
+    ChipListDiffer(RecyclerView.Adapter<?> adapter, Runnable onDispatched) {
+        mAdapter = adapter;
+        mOnDispatched = onDispatched;
+    }
+
+    /**
+     * Gets the chips being displayed by the adapter.
+     * @return Unmodifiable list of {@link Chip}
+     */
+    List<Chip> getList() {
+        return mList;
+    }
+
+    /**
+     * Replaces the displayed chips without dispatching any updates, dropping any diff
+     * in progress. The adapter must notify that its data set changed.
+     *
+     * @param chips List of {@link Chip}
+     */
+    void reset(List<? extends Chip> chips) {
+        mGeneration++;
+        mList = Collections.unmodifiableList(new ArrayList<Chip>(chips));
+    }
+
+    /**
+     * Diffs the given chips against the displayed ones in the background, and then
+     * displays them, dispatching the updates to the adapter.
+     *
+     * @param chips List of {@link Chip}
+     */
+    void submit(List<? extends Chip> chips) {
+        final int generation = ++mGeneration;
+        final List<Chip> oldList = mList;
+        final List<Chip> newList = Collections.unmodifiableList(new ArrayList<Chip>(chips));
+
+        // Nothing to diff when either list is empty
+        if (oldList.isEmpty() || newList.isEmpty()) {
+            mList = newList;
+            if (!oldList.isEmpty()) {
+                mAdapter.notifyItemRangeRemoved(0, oldList.size());
+            } else if (!newList.isEmpty()) {
+                mAdapter.notifyItemRangeInserted(0, newList.size());
+            }
+            dispatched();
+            return;
+        }
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                        new ChipDiffCallback(oldList, newList));
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            mList = newList;
+                            result.dispatchUpdatesTo(mAdapter);
+                            dispatched();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Checks if the given chips are the same item, by their id.
+     *
+     * @param a {@link Chip}
+     * @param b {@link Chip}
+     * @return True if they're the same item
+     */
+    static boolean isSameChip(Chip a, Chip b) {
+        if (a == b) { return true; }
+        final Object id = a.getId();
+        return id != null && id.equals(b.getId());
+    }
+
+    /**
+     * Checks if the given chips display the same title, subtitle, and avatar.
+     *
+     * @param a {@link Chip}
+     * @param b {@link Chip}
+     * @return True if they display the same
+     */
+    static boolean isSameContents(Chip a, Chip b) {
+        return a == b
+                || (TextUtils.equals(a.getTitle(), b.getTitle())
+                && TextUtils.equals(a.getSubtitle(), b.getSubtitle())
+                && (a.getAvatarUri() == null
+                        ? b.getAvatarUri() == null
+                        : a.getAvatarUri().equals(b.getAvatarUri()))
+                && a.getAvatarDrawable() == b.getAvatarDrawable());
+    }
+
+    private void dispatched() {
+        if (mOnDispatched != null) {
+            mOnDispatched.run();
+        }
+    }
+
+
+    /**
+     * Implementation of {@link DiffUtil.Callback} that compares chips by id, and then
+     * by what's displayed of them.
+     */
+    private static final class ChipDiffCallback extends DiffUtil.Callback {
+        private final List<Chip> mOldList;
+        private final List<Chip> mNewList;
+
+        ChipDiffCallback(List<Chip> oldList, List<Chip> newList) {
+            mOldList = oldList;
+            mNewList = newList;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldList.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewList.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return isSameChip(mOldList.get(oldPosition), mNewList.get(newPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return isSameContents(mOldList.get(oldPosition), mNewList.get(newPosition));
+        }
+    }
+}
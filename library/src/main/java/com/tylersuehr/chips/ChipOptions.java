@@ -31,6 +31,7 @@ final class ChipOptions {
     boolean mShowAvatar;
     boolean mShowDetails;
     boolean mShowDelete;
+    boolean mFlatChips;
 
     /* Properties pertaining to ChipDetailsView */
     ColorStateList mDetailsChipDeleteIconColor;
@@ -46,6 +47,12 @@ final class ChipOptions {
     Typeface mTypeface = Typeface.DEFAULT;
     boolean mAllowCustomChips;
     boolean mHideKeyboardOnChipClick;
+    boolean mAsyncDiffing;
+    boolean mFrameCoalescing;
+    int mUndoLimit;
+    boolean mPrecomputeFilterText;
+    boolean mVirtualizeChips;
+    int mCollapsedChipCount;
     int mMaxRows;
 
 
@@ -53,6 +60,9 @@ final class ChipOptions {
     @NonNull
     ChipImageRenderer mImageRenderer;
 
+    /* Style compiled from these options, or null if it must be compiled again */
+    private ChipStyle mStyle;
+
 
     ChipOptions(Context c, AttributeSet attrs) {
         TypedArray a = c.obtainStyledAttributes(attrs, R.styleable.ChipsInputLayout);
@@ -72,6 +82,7 @@ final class ChipOptions {
         mChipTextColor = a.getColorStateList(R.styleable.ChipsInputLayout_chip_textColor);
         mChipColor = a.getColorStateList(R.styleable.ChipsInputLayout_chipColor);
         mDeleteIconAlpha = a.getFloat(R.styleable.ChipsInputLayout_delete_icon_alpha, .53f);
+        mFlatChips = a.getBoolean(R.styleable.ChipsInputLayout_flatChips, false);
 
 
         // Setup the properties for the DetailedChipView
@@ -88,9 +99,32 @@ final class ChipOptions {
         mAllowCustomChips = a.getBoolean(R.styleable.ChipsInputLayout_allowCustomChips, true);
         mHideKeyboardOnChipClick = a.getBoolean(R.styleable.ChipsInputLayout_hideKeyboardOnChipClick, true);
         mMaxRows = a.getInt(R.styleable.ChipsInputLayout_maxRows, 3);
+        mVirtualizeChips = a.getBoolean(R.styleable.ChipsInputLayout_virtualizeChips, false);
+        mCollapsedChipCount = a.getInt(R.styleable.ChipsInputLayout_collapsedChipCount, 0);
 
         a.recycle();
 
         mImageRenderer = new DefaultImageRenderer();
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the style of chip views compiled from these options, compiling it if the
+     * options changed since it was last compiled.
+     *
+     * @param c {@link Context}
+     * @return {@link ChipStyle}
+     */
+    ChipStyle getStyle(Context c) {
+        if (mStyle == null) {
+            mStyle = new ChipStyle(c, this);
+        }
+        return mStyle;
+    }
+
+    /**
+     * Drops the compiled style, after any option it's compiled from changed.
+     */
+    void invalidateStyle() {
+        mStyle = null;
+    }
+}
@@ -0,0 +1,167 @@
+package com.tylersuehr.chips;
+import java.util.Arrays;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Growing, flat arrays of the rows of a catalog, used to build one (see
+ * {@link CompactChipCatalog.Builder} and {@link ChipCatalogWriter}).
+ *
+ * Each row is stored as:
+ * (1) Its id, in a long array.
+ * (2) Its title and subtitle, in one char array shared by all rows, with the start
+ *     of each title (2 * row) and subtitle (2 * row + 1) in an int array, followed
+ *     by the end of the text.
+ * (3) Whether it has a subtitle, as a bit in an int array.
+ *
+ * Arrays are larger than the rows that were added; only the first rows of them are
+ * used. This only uses plain Java, so it can also be used by tools that run on a
+ * desktop JVM.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipRowBuffer {
+    private long[] mIds;
+    private int[] mStarts;
+    private int[] mSubtitleFlags;
+    private char[] mText;
+    private int mCount;
+    private int mTextLength;
+
+
+    /**
+     * @param expectedCount Number of rows expected to be added
+     */
+    ChipRowBuffer(int expectedCount) {
+        final int capacity = Math.max(expectedCount, 1);
+        mIds = new long[capacity];
+        mStarts = new int[(capacity << 1) + 1];
+        mSubtitleFlags = new int[flagsLength(capacity)];
+        mText = new char[capacity * 16];
+    }
+
+    /**
+     * Adds a row.
+     *
+     * @param id Id of the chip
+     * @param title Title of the chip
+     * @param subtitle Subtitle of the chip, if any
+     */
+    void add(long id, CharSequence title, CharSequence subtitle) {
+        if (title == null) {
+            throw new NullPointerException("Title cannot be null!");
+        }
+        if (mCount == mIds.length) {
+            final int capacity = mIds.length << 1;
+            mIds = Arrays.copyOf(mIds, capacity);
+            mStarts = Arrays.copyOf(mStarts, (capacity << 1) + 1);
+            mSubtitleFlags = Arrays.copyOf(mSubtitleFlags, flagsLength(capacity));
+        }
+
+        mIds[mCount] = id;
+        mStarts[mCount << 1] = mTextLength;
+        appendText(title);
+        mStarts[(mCount << 1) + 1] = mTextLength;
+        if (subtitle != null) {
+            mSubtitleFlags[mCount >>> 5] |= 1 << (mCount & 31);
+            appendText(subtitle);
+        }
+        mCount++;
+        mStarts[mCount << 1] = mTextLength;
+    }
+
+    int getCount() {
+        return mCount;
+    }
+
+    int getTextLength() {
+        return mTextLength;
+    }
+
+    long[] getIds() {
+        return mIds;
+    }
+
+    int[] getStarts() {
+        return mStarts;
+    }
+
+    int[] getSubtitleFlags() {
+        return mSubtitleFlags;
+    }
+
+    char[] getText() {
+        return mText;
+    }
+
+    /* Number of ints needed for the subtitle flags of the given number of rows */
+    static int flagsLength(int count) {
+        return (count + 31) >>> 5;
+    }
+
+    /**
+     * Sorts the first of the given keys, without boxing them, and gets the order they
+     * sort in; like the rows of a catalog sorted by their id. Equal keys stay in the
+     * order they were in.
+     *
+     * This is a radix sort (LSD, a byte at a time), so it takes linear time, and only
+     * 20 bytes of temporary arrays for each key.
+     *
+     * @param keys Keys to sort, which aren't changed
+     * @param count Number of keys to sort
+     * @return Index of each key, in sorted order
+     */
+    static int[] sortedOrder(long[] keys, int count) {
+        int[] order = new int[count];
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+            // Flip the sign bit, so negative keys sort first when compared as unsigned
+            sorted[i] = keys[i] ^ Long.MIN_VALUE;
+        }
+        if (count < 2) {
+            return order;
+        }
+
+        int[] orderTemp = new int[count];
+        long[] sortedTemp = new long[count];
+        final int[] offsets = new int[257];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(offsets, 0);
+            for (int i = 0; i < count; i++) {
+                offsets[(int)((sorted[i] >>> shift) & 0xff) + 1]++;
+            }
+            // Nothing to do when every key has the same byte, like the top bytes of ids
+            if (offsets[(int)((sorted[0] >>> shift) & 0xff) + 1] == count) {
+                continue;
+            }
+            for (int b = 0; b < 256; b++) {
+                offsets[b + 1] += offsets[b];
+            }
+            for (int i = 0; i < count; i++) {
+                final int to = offsets[(int)((sorted[i] >>> shift) & 0xff)]++;
+                sortedTemp[to] = sorted[i];
+                orderTemp[to] = order[i];
+            }
+
+            final long[] sortedSwap = sorted;
+            sorted = sortedTemp;
+            sortedTemp = sortedSwap;
+            final int[] orderSwap = order;
+            order = orderTemp;
+            orderTemp = orderSwap;
+        }
+        return order;
+    }
+
+    private void appendText(CharSequence text) {
+        final int length = text.length();
+        if (mTextLength + length > mText.length) {
+            mText = Arrays.copyOf(mText, Math.max(mText.length << 1, mTextLength + length));
+        }
+        for (int i = 0; i < length; i++) {
+            mText[mTextLength++] = text.charAt(i);
+        }
+    }
+}
@@ -0,0 +1,492 @@
+package com.tylersuehr.chips;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Trigram index of the rows of a {@link ChipCatalog}, used to only match the rows that
+ * could contain a pattern, rather than every row of the catalog.
+ *
+ * For each trigram (three chars in a row, ignoring case) in the title or subtitle of any
+ * row, this has the rows that contain it. A pattern can only match the rows that have
+ * every one of its trigrams. Those rows are still matched as usual, so this only ever
+ * narrows down which rows to match.
+ *
+ * An index can be written to a file, and mapped back into memory later without being
+ * parsed, so it doesn't have to be built again; see {@link ChipSearchIndexCache}. The
+ * file is little-endian, and has these sections in order:
+ * (1) Header: magic, version, number of rows, number of trigrams, size of the postings,
+ *     and the content hash of the catalog.
+ * (2) Trigrams: every trigram, sorted, as longs.
+ * (3) Starts: the start of each trigram's rows in the postings, as ints, followed by
+ *     the end of the postings.
+ * (4) Postings: the rows of each trigram, as varint deltas.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public final class ChipSearchIndex {
+    /* "CIDX" when read as little-endian bytes */
+    private static final int MAGIC = 0x58444943;
+    /* Must change whenever the file or the way rows are matched changes */
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    /* FNV-1a 64-bit */
+    private static final long HASH_OFFSET = 0xcbf29ce484222325L;
+    private static final long HASH_PRIME = 0x100000001b3L;
+
+    private final int mRowCount;
+    private final int mKeyCount;
+    private final long mContentHash;
+    /* Whole index, including the header */
+    private final ByteBuffer mBuffer;
+    private final int mSize;
+    private final LongBuffer mKeys;
+    private final IntBuffer mStarts;
+    private final ByteBuffer mPostings;
+
+
+    private ChipSearchIndex(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a chip search index!");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported chip search index version: " + buffer.getInt(4));
+        }
+
+        mRowCount = buffer.getInt(8);
+        mKeyCount = buffer.getInt(12);
+        final int postingsLength = buffer.getInt(16);
+        mContentHash = buffer.getLong(24);
+        if (mRowCount < 0 || mKeyCount < 0 || postingsLength < 0 || buffer.remaining()
+                < HEADER_SIZE + 8L * mKeyCount + 4L * (mKeyCount + 1) + postingsLength) {
+            throw new IOException("Chip search index is truncated!");
+        }
+        mBuffer = buffer;
+        mSize = HEADER_SIZE + 8 * mKeyCount + 4 * (mKeyCount + 1) + postingsLength;
+
+        int offset = HEADER_SIZE;
+        mKeys = section(buffer, offset).asLongBuffer();
+        offset += 8 * mKeyCount;
+        mStarts = section(buffer, offset).asIntBuffer();
+        offset += 4 * (mKeyCount + 1);
+        mPostings = section(buffer, offset);
+    }
+
+    /**
+     * Builds an index of every row of the given catalog. This reads the text of every
+     * row, so it should be called on a background thread.
+     *
+     * @param catalog {@link ChipCatalog} to index
+     * @param contentHash Content hash of the catalog, from {@link #hash(ChipCatalog)},
+     *        or its version
+     * @return {@link ChipSearchIndex}
+     */
+    public static ChipSearchIndex build(@NonNull ChipCatalog catalog, long contentHash) {
+        final Builder builder = new Builder();
+        final int count = catalog.getCount();
+        for (int row = 0; row < count; row++) {
+            builder.addRow(row, catalog.getTitle(row), catalog.getSubtitle(row));
+        }
+        try {
+            return new ChipSearchIndex(builder.toBuffer(count, contentHash));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Maps an index that was written to the given file.
+     *
+     * @param file {@link File} of the index
+     * @return {@link ChipSearchIndex}
+     * @throws IOException If the file couldn't be mapped, or isn't an index
+     */
+    public static ChipSearchIndex open(@NonNull File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            return new ChipSearchIndex(in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length()));
+        } finally {
+            // The mapping stays valid after the channel is closed
+            in.close();
+        }
+    }
+
+    /**
+     * Computes a hash of the text of every row of the given catalog, which changes
+     * whenever anything that affects searching it changes.
+     *
+     * @param catalog {@link ChipCatalog}
+     * @return Content hash
+     */
+    public static long hash(@NonNull ChipCatalog catalog) {
+        final int count = catalog.getCount();
+        long hash = hashInt(HASH_OFFSET, count);
+        for (int row = 0; row < count; row++) {
+            hash = hashText(hash, catalog.getTitle(row));
+            hash = hashText(hash, catalog.getSubtitle(row));
+        }
+        return hash;
+    }
+
+    /**
+     * Writes this index to the given file, so it can be mapped later.
+     *
+     * @param file {@link File}
+     * @throws IOException If the file couldn't be written
+     */
+    public void writeTo(@NonNull File file) throws IOException {
+        final ByteBuffer buffer = mBuffer.duplicate();
+        buffer.position(0);
+        buffer.limit(mSize);
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            final FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    public long getContentHash() {
+        return mContentHash;
+    }
+
+    /**
+     * Finds the rows that could match the given pattern.
+     *
+     * @param pattern Lowercase pattern
+     * @return Sorted rows that could match, or null if the pattern is too short to
+     *         narrow down the rows (so every row could match)
+     */
+    @Nullable
+    int[] candidates(String pattern) {
+        final long[] keys = new long[Math.max(pattern.length() - 2, 0)];
+        int keyCount = 0;
+        for (int i = 0; i + 2 < pattern.length(); i++) {
+            final char a = pattern.charAt(i);
+            final char b = pattern.charAt(i + 1);
+            final char c = pattern.charAt(i + 2);
+            if (!Character.isWhitespace(a) && !Character.isWhitespace(b) && !Character.isWhitespace(c)) {
+                keys[keyCount++] = key(a, b, c);
+            }
+        }
+        if (keyCount == 0) {
+            return null;
+        }
+
+        // Intersect the rows of each trigram, starting with the one that has the fewest
+        final int[] slots = new int[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            final int slot = findKey(keys[i]);
+            if (slot < 0) {
+                return new int[0];
+            }
+            slots[i] = slot;
+        }
+        int smallest = 0;
+        for (int i = 1; i < keyCount; i++) {
+            if (postingsLength(slots[i]) < postingsLength(slots[smallest])) {
+                smallest = i;
+            }
+        }
+
+        int[] rows = decode(slots[smallest]);
+        for (int i = 0; i < keyCount && rows.length > 0; i++) {
+            if (i != smallest && slots[i] != slots[smallest]) {
+                rows = retain(rows, slots[i]);
+            }
+        }
+        return rows;
+    }
+
+    private int findKey(long key) {
+        int low = 0;
+        int high = mKeyCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midKey = mKeys.get(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int postingsLength(int slot) {
+        return mStarts.get(slot + 1) - mStarts.get(slot);
+    }
+
+    private int[] decode(int slot) {
+        int[] rows = new int[16];
+        int count = 0;
+        int position = mStarts.get(slot);
+        final int end = mStarts.get(slot + 1);
+        int row = -1;
+        while (position < end) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = mPostings.get(position++);
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            row += delta;
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count << 1);
+            }
+            rows[count++] = row;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /* Keeps only the given rows that are also in the postings of the given slot */
+    private int[] retain(int[] rows, int slot) {
+        int kept = 0;
+        int i = 0;
+        int position = mStarts.get(slot);
+        final int end = mStarts.get(slot + 1);
+        int row = -1;
+        while (position < end && i < rows.length) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = mPostings.get(position++);
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            row += delta;
+
+            while (i < rows.length && rows[i] < row) {
+                i++;
+            }
+            if (i < rows.length && rows[i] == row) {
+                rows[kept++] = row;
+                i++;
+            }
+        }
+        return Arrays.copyOf(rows, kept);
+    }
+
+    private static long key(char a, char b, char c) {
+        return ((long)Character.toLowerCase(a) << 32)
+                | ((long)Character.toLowerCase(b) << 16)
+                | Character.toLowerCase(c);
+    }
+
+    private static long hashInt(long hash, int value) {
+        for (int i = 0; i < 4; i++) {
+            hash = (hash ^ ((value >>> (i << 3)) & 0xff)) * HASH_PRIME;
+        }
+        return hash;
+    }
+
+    private static long hashText(long hash, CharSequence text) {
+        if (text == null) {
+            return hashInt(hash, -1);
+        }
+        final int length = text.length();
+        hash = hashInt(hash, length);
+        for (int i = 0; i < length; i++) {
+            final char c = text.charAt(i);
+            hash = (hash ^ (c & 0xff)) * HASH_PRIME;
+            hash = (hash ^ (c >>> 8)) * HASH_PRIME;
+        }
+        return hash;
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int offset) {
+        final ByteBuffer section = buffer.duplicate();
+        section.position(offset);
+        return section.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    /**
+     * Collects the rows of each trigram, with an open-addressing hash table from each
+     * trigram to its postings. Rows must be added in order.
+     */
+    private static final class Builder {
+        private long[] mKeys = new long[1024];
+        private Postings[] mPostings = new Postings[1024];
+        private int mKeyCount;
+        /* Trigrams of the row being added */
+        private long[] mRowKeys = new long[64];
+        private int mRowKeyCount;
+
+        void addRow(int row, CharSequence title, @Nullable CharSequence subtitle) {
+            mRowKeyCount = 0;
+
+            // Titles are matched as they are, so skip trigrams with whitespace
+            for (int i = 0; i + 2 < title.length(); i++) {
+                final char a = title.charAt(i);
+                final char b = title.charAt(i + 1);
+                final char c = title.charAt(i + 2);
+                if (!Character.isWhitespace(a) && !Character.isWhitespace(b) && !Character.isWhitespace(c)) {
+                    addRowKey(key(a, b, c));
+                }
+            }
+
+            // Subtitles are matched ignoring their whitespace, so skip over it
+            if (subtitle != null) {
+                char a = 0;
+                char b = 0;
+                int seen = 0;
+                for (int i = 0; i < subtitle.length(); i++) {
+                    final char c = subtitle.charAt(i);
+                    if (Character.isWhitespace(c)) {
+                        continue;
+                    }
+                    if (++seen >= 3) {
+                        addRowKey(key(a, b, c));
+                    }
+                    a = b;
+                    b = c;
+                }
+            }
+
+            // Each trigram only gets the row once
+            Arrays.sort(mRowKeys, 0, mRowKeyCount);
+            for (int i = 0; i < mRowKeyCount; i++) {
+                if (i == 0 || mRowKeys[i] != mRowKeys[i - 1]) {
+                    postingsOf(mRowKeys[i]).add(row);
+                }
+            }
+        }
+
+        ByteBuffer toBuffer(int rowCount, long contentHash) {
+            // Sort the trigrams, along with their postings
+            final long[] keys = new long[mKeyCount];
+            final Postings[] postings = new Postings[mKeyCount];
+            int n = 0;
+            for (int slot = 0; slot < mKeys.length; slot++) {
+                if (mPostings[slot] != null) {
+                    keys[n] = mKeys[slot];
+                    postings[n++] = mPostings[slot];
+                }
+            }
+            final int[] order = ChipRowBuffer.sortedOrder(keys, mKeyCount);
+
+            int postingsLength = 0;
+            for (Postings p : postings) {
+                postingsLength += p.mLength;
+            }
+            final ByteBuffer buffer = ByteBuffer
+                    .allocate(HEADER_SIZE + 8 * mKeyCount + 4 * (mKeyCount + 1) + postingsLength)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(rowCount);
+            buffer.putInt(mKeyCount);
+            buffer.putInt(postingsLength);
+            buffer.putInt(0);
+            buffer.putLong(contentHash);
+            for (int i : order) {
+                buffer.putLong(keys[i]);
+            }
+            int start = 0;
+            for (int i : order) {
+                buffer.putInt(start);
+                start += postings[i].mLength;
+            }
+            buffer.putInt(start);
+            for (int i : order) {
+                buffer.put(postings[i].mBytes, 0, postings[i].mLength);
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        private void addRowKey(long key) {
+            if (mRowKeyCount == mRowKeys.length) {
+                mRowKeys = Arrays.copyOf(mRowKeys, mRowKeyCount << 1);
+            }
+            mRowKeys[mRowKeyCount++] = key;
+        }
+
+        private Postings postingsOf(long key) {
+            int slot = slotOf(mKeys, mPostings, key);
+            if (mPostings[slot] == null) {
+                if ((mKeyCount + 1) << 1 > mKeys.length) {
+                    grow();
+                    slot = slotOf(mKeys, mPostings, key);
+                }
+                mKeys[slot] = key;
+                mPostings[slot] = new Postings();
+                mKeyCount++;
+            }
+            return mPostings[slot];
+        }
+
+        private void grow() {
+            final long[] keys = new long[mKeys.length << 1];
+            final Postings[] postings = new Postings[mKeys.length << 1];
+            for (int slot = 0; slot < mKeys.length; slot++) {
+                if (mPostings[slot] != null) {
+                    final int newSlot = slotOf(keys, postings, mKeys[slot]);
+                    keys[newSlot] = mKeys[slot];
+                    postings[newSlot] = mPostings[slot];
+                }
+            }
+            mKeys = keys;
+            mPostings = postings;
+        }
+
+        private static int slotOf(long[] keys, Postings[] postings, long key) {
+            final int mask = keys.length - 1;
+            int slot = (int)((key * 0x9e3779b97f4a7c15L) >>> 40) & mask;
+            while (postings[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
+
+    /**
+     * Growing array of the rows of a trigram, as varint deltas.
+     */
+    private static final class Postings {
+        private byte[] mBytes = new byte[4];
+        private int mLength;
+        private int mLastRow = -1;
+
+        void add(int row) {
+            int delta = row - mLastRow;
+            mLastRow = row;
+            if (mLength + 5 > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, mBytes.length << 1);
+            }
+            while ((delta & ~0x7f) != 0) {
+                mBytes[mLength++] = (byte)((delta & 0x7f) | 0x80);
+                delta >>>= 7;
+            }
+            mBytes[mLength++] = (byte)delta;
+        }
+    }
+}
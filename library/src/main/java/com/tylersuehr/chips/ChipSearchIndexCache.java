@@ -0,0 +1,242 @@
+package com.tylersuehr.chips;
+import android.content.Context;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Keeps the {@link ChipSearchIndex} of each catalog in files (like in the app's cache
+ * directory), named by the version of the catalog, so the index of a catalog that
+ * hasn't changed is mapped from its file on the next launch rather than built again.
+ *
+ * The version of a catalog is the one given for it, or the one it knows (see
+ * {@link ChipCatalog.Versioned}). Otherwise, the text of every row is hashed instead,
+ * which reads the whole catalog.
+ *
+ * Only the few most recently used indexes are kept.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public final class ChipSearchIndexCache {
+    private static final String DIRECTORY_NAME = "chip-search-index";
+    private static final String SUFFIX = ".idx";
+    private static final String TEMP_PREFIX = "index";
+    private static final String TEMP_SUFFIX = ".tmp";
+    /* Number of index files to keep */
+    private static final int MAX_FILES = 4;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final File mDirectory;
+    private final Executor mExecutor;
+
+
+    public ChipSearchIndexCache(@NonNull File directory) {
+        this(directory, AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * @param directory Directory to keep index files in
+     * @param executor {@link Executor} to load and build indexes on
+     */
+    public ChipSearchIndexCache(@NonNull File directory, @NonNull Executor executor) {
+        if (directory == null) {
+            throw new NullPointerException("Directory cannot be null!");
+        }
+        if (executor == null) {
+            throw new NullPointerException("Executor cannot be null!");
+        }
+        mDirectory = directory;
+        mExecutor = executor;
+    }
+
+    /**
+     * Creates a cache that keeps its index files in the app's cache directory.
+     *
+     * @param context {@link Context}
+     * @return {@link ChipSearchIndexCache}
+     */
+    public static ChipSearchIndexCache create(@NonNull Context context) {
+        return new ChipSearchIndexCache(new File(context.getCacheDir(), DIRECTORY_NAME));
+    }
+
+    /**
+     * Loads the index of the data source's catalog in the background, and gives it to
+     * the data source on the main thread, as long as it's still using that catalog.
+     * Until then, the data source searches without an index, as usual.
+     *
+     * @param dataSource {@link CatalogChipDataSource}
+     */
+    public void attach(@NonNull final CatalogChipDataSource dataSource) {
+        final ChipCatalog catalog = dataSource.getCatalog();
+        loadAsync(catalog, new Callback() {
+            @Override
+            public void onSearchIndexLoaded(ChipSearchIndex index) {
+                if (dataSource.getCatalog() == catalog) {
+                    dataSource.setSearchIndex(index);
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the index of the given catalog in the background, like {@link #load(ChipCatalog)},
+     * and gives it to the callback on the main thread.
+     *
+     * @param catalog {@link ChipCatalog}
+     * @param callback {@link Callback}
+     */
+    public void loadAsync(@NonNull ChipCatalog catalog, @NonNull Callback callback) {
+        loadAsync(catalog, versionOf(catalog), callback);
+    }
+
+    /**
+     * Loads the index of the given version of the given catalog in the background, like
+     * {@link #load(ChipCatalog, long)}, and gives it to the callback on the main thread.
+     *
+     * @param catalog {@link ChipCatalog}
+     * @param version Version of the catalog, or 0 to hash its content instead
+     * @param callback {@link Callback}
+     */
+    public void loadAsync(@NonNull final ChipCatalog catalog, final long version,
+                          @NonNull final Callback callback) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ChipSearchIndex index = load(catalog, version);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onSearchIndexLoaded(index);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Maps the index of the given catalog from its file if it has one, otherwise
+     * builds the index and writes it to a file for next time.
+     *
+     * @param catalog {@link ChipCatalog}
+     * @return {@link ChipSearchIndex}
+     */
+    @WorkerThread
+    public ChipSearchIndex load(@NonNull ChipCatalog catalog) {
+        return load(catalog, versionOf(catalog));
+    }
+
+    /**
+     * Maps the index of the given version of the given catalog from its file if it has
+     * one, otherwise builds the index and writes it to a file for next time. The version
+     * must change whenever the text of the catalog's rows does.
+     *
+     * @param catalog {@link ChipCatalog}
+     * @param version Version of the catalog, or 0 to hash its content instead
+     * @return {@link ChipSearchIndex}
+     */
+    @WorkerThread
+    public ChipSearchIndex load(@NonNull ChipCatalog catalog, long version) {
+        // Versions are kept apart from content hashes, so they can't be mistaken for one
+        final String name;
+        final long key;
+        if (version != 0) {
+            key = version;
+            name = "v" + Long.toHexString(version) + SUFFIX;
+        } else {
+            key = ChipSearchIndex.hash(catalog);
+            name = Long.toHexString(key) + SUFFIX;
+        }
+
+        final File file = new File(mDirectory, name);
+        if (file.exists()) {
+            try {
+                final ChipSearchIndex index = ChipSearchIndex.open(file);
+                if (index.getContentHash() == key && index.getRowCount() == catalog.getCount()) {
+                    file.setLastModified(System.currentTimeMillis());
+                    return index;
+                }
+            } catch (IOException ignored) {
+                // Written by an older version, or corrupt; build it again
+            }
+        }
+
+        final ChipSearchIndex index = ChipSearchIndex.build(catalog, key);
+        try {
+            // Write to a temporary file of its own first, so a partly written index is
+            // never mapped, and other writers of the same index don't write over it
+            if (mDirectory.isDirectory() || mDirectory.mkdirs()) {
+                final File temp = File.createTempFile(TEMP_PREFIX, TEMP_SUFFIX, mDirectory);
+                index.writeTo(temp);
+                if (!temp.renameTo(file)) {
+                    temp.delete();
+                }
+                trim();
+            }
+        } catch (IOException ignored) {
+            // The index still works, it just can't be reused next time
+        }
+        return index;
+    }
+
+    /**
+     * Deletes every index file.
+     */
+    public void clear() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /* Deletes the least recently used index files, past the maximum */
+    private void trim() {
+        // Temporary files are left alone, since they're still being written
+        final File[] files = mDirectory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(SUFFIX);
+            }
+        });
+        if (files == null || files.length <= MAX_FILES) { return; }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                final long modifiedA = a.lastModified();
+                final long modifiedB = b.lastModified();
+                return modifiedA > modifiedB ? -1 : (modifiedA == modifiedB ? 0 : 1);
+            }
+        });
+        for (int i = MAX_FILES; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+
+
+    private static long versionOf(ChipCatalog catalog) {
+        return catalog instanceof ChipCatalog.Versioned
+                ? ((ChipCatalog.Versioned)catalog).getVersion()
+                : 0;
+    }
+
+
+    /**
+     * Defines a callback for when an index has been loaded, called on the main thread.
+     */
+    public interface Callback {
+        void onSearchIndexLoaded(ChipSearchIndex index);
+    }
+}
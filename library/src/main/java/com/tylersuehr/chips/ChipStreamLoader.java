@@ -0,0 +1,178 @@
+package com.tylersuehr.chips;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Loads filterable chips into a {@link ChipDataSource} a chunk at a time, rather than
+ * all at once, so a very large number of chips doesn't freeze the main thread.
+ *
+ * Chunks can be published from any thread, or pulled from an {@link Iterator} on a
+ * background thread. Each chunk is added to the data source on the main thread in its
+ * own message, so the UI keeps drawing (and the user can keep filtering the chips
+ * loaded so far) in between chunks.
+ *
+ * Chunks pulled from an iterator aren't posted until the previous one was added, so a
+ * fast iterator doesn't flood the main thread with chunks it can't keep up with.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public final class ChipStreamLoader {
+    /* Default number of chips in each chunk */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ChipDataSource mDataSource;
+    private final ProgressListener mListener;
+
+    /* True if this was cancelled; checked from any thread */
+    private volatile boolean mCancelled;
+    /* True once every chunk was loaded; main thread only */
+    private boolean mComplete;
+    /* Number of chips loaded so far; main thread only */
+    private int mLoaded;
+
+
+    public ChipStreamLoader(@NonNull ChipDataSource dataSource, @Nullable ProgressListener listener) {
+        if (dataSource == null) {
+            throw new NullPointerException("Data source cannot be null!");
+        }
+        mDataSource = dataSource;
+        mListener = listener;
+    }
+
+    /**
+     * Pulls chips from the given iterator on the given executor, and publishes them
+     * in chunks of the given size, then completes.
+     *
+     * @param chips Iterator of {@link Chip}
+     * @param chunkSize Number of chips in each chunk
+     * @param executor {@link Executor} to iterate the chips on
+     */
+    public void load(@NonNull final Iterator<? extends Chip> chips,
+                     final int chunkSize,
+                     @NonNull Executor executor) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1!");
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Semaphore added = new Semaphore(1);
+                while (!mCancelled && chips.hasNext()) {
+                    final List<Chip> chunk = new ArrayList<>(chunkSize);
+                    while (chunk.size() < chunkSize && chips.hasNext()) {
+                        chunk.add(chips.next());
+                    }
+
+                    // Wait for the previous chunk to be added, while this one was pulled
+                    added.acquireUninterruptibly();
+                    post(chunk, added);
+                }
+                complete();
+            }
+        });
+    }
+
+    /**
+     * Adds a chunk of chips to the data source on the main thread.
+     * This can be called from any thread.
+     *
+     * @param chunk List of {@link Chip}
+     */
+    public void publish(@NonNull final List<? extends Chip> chunk) {
+        if (chunk == null) {
+            throw new NullPointerException("Chunk cannot be null!");
+        }
+        post(chunk, null);
+    }
+
+    /**
+     * Marks that every chunk has been published, once the chunks published so far
+     * have been added. This can be called from any thread.
+     */
+    public void complete() {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mCancelled || mComplete) { return; }
+
+                mComplete = true;
+                if (mListener != null) {
+                    mListener.onLoadComplete(mLoaded);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops loading chips. Chunks that were already added stay in the data source.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Posts a chunk of chips to be added on the main thread.
+     *
+     * @param chunk List of {@link Chip}
+     * @param added Released once the chunk was added (or dropped), if not null
+     */
+    private void post(final List<? extends Chip> chunk, @Nullable final Semaphore added) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (mCancelled || mComplete) { return; }
+
+                    // Adding the chunk notifies observers, so the UI updates
+                    mDataSource.setFilterableChips(chunk);
+                    mLoaded += chunk.size();
+                    if (mListener != null) {
+                        mListener.onChipsLoaded(mLoaded);
+                    }
+                } finally {
+                    if (added != null) {
+                        added.release();
+                    }
+                }
+            }
+        });
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * @return True if every chunk was added, must be called on the main thread
+     */
+    public boolean isComplete() {
+        return mComplete;
+    }
+
+    /**
+     * @return Number of chips added so far, must be called on the main thread
+     */
+    public int getLoadedCount() {
+        return mLoaded;
+    }
+
+
+    /**
+     * Defines callbacks for the progress of loading chips, called on the main thread.
+     */
+    public interface ProgressListener {
+        void onChipsLoaded(int loaded);
+        void onLoadComplete(int total);
+    }
+}
@@ -0,0 +1,122 @@
+package com.tylersuehr.chips;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.ColorFilter;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import androidx.appcompat.content.res.AppCompatResources;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Immutable style of chip views, compiled from {@link ChipOptions} once, so views only
+ * have to set values that are already resolved (pixel sizes, colors, color filters, and
+ * drawables to copy), instead of resolving the options again for every chip.
+ *
+ * Views keep the style they last applied; since a style never changes, a view given the
+ * same style again has nothing to do. Changing the options makes a new style.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipStyle {
+    /* Properties pertaining to ChipView and FlatChipView */
+    final boolean showAvatar;
+    final boolean showDelete;
+    final Typeface typeface;
+    final ColorStateList textColor;
+    /* Background color behind a chip view, or null for none */
+    final Integer backgroundColor;
+    /* Tint of the chip view's background, or null for none */
+    final ColorStateList chipTint;
+    /* Color of a flat chip, which has no background behind it */
+    final int flatChipColor;
+    /* Color filter of the delete icon, or null for none */
+    final ColorFilter deleteIconColorFilter;
+    final int deleteIconAlpha;
+    /* Delete icon drawn by every flat chip, with its color filter and alpha applied */
+    final Drawable flatDeleteIcon;
+    private final Drawable.ConstantState mDeleteIconState;
+    private final Drawable mDeleteIcon;
+
+    /* Pixel sizes of the parts of a chip view */
+    final int chipHeight;
+    final int deleteSize;
+    final int smallMargin;
+    final int labelMargin;
+    final int edgeMargin;
+    final int labelLeftMargin;
+    final int labelRightMargin;
+
+    /* Properties pertaining to filterable chip views */
+    final ColorFilter filterableBackgroundColorFilter;
+    final ColorStateList filterableTextColor;
+
+
+    ChipStyle(Context c, ChipOptions options) {
+        final Resources res = c.getResources();
+        final float density = res.getDisplayMetrics().density;
+        chipHeight = res.getDimensionPixelSize(R.dimen.chip_height);
+        deleteSize = (int)(24f * density);
+        smallMargin = (int)(4f * density);
+        labelMargin = (int)(8f * density);
+        edgeMargin = (int)(12f * density);
+
+        // Adjust label margins according to the Google Material Design Guide
+        showAvatar = options.mShowAvatar;
+        showDelete = options.mShowDelete;
+        labelLeftMargin = showAvatar ? labelMargin : edgeMargin;
+        labelRightMargin = showDelete ? smallMargin : edgeMargin;
+
+        typeface = options.mTypeface;
+        textColor = options.mChipTextColor != null
+                ? options.mChipTextColor
+                : ContextCompat.getColorStateList(c, R.color.chip_text_color);
+        backgroundColor = options.mChipBackgroundColor != null
+                ? options.mChipBackgroundColor.getDefaultColor() : null;
+        chipTint = options.mChipColor;
+        if (options.mChipColor != null) {
+            flatChipColor = options.mChipColor.getDefaultColor();
+        } else if (backgroundColor != null) {
+            flatChipColor = backgroundColor;
+        } else {
+            flatChipColor = ContextCompat.getColor(c, R.color.colorChipViewBackground);
+        }
+
+        // Delete icons are copied from one constant state, so they share their data
+        mDeleteIcon = options.mChipDeleteIcon != null
+                ? options.mChipDeleteIcon
+                : AppCompatResources.getDrawable(c, R.drawable.chip_delete_icon_20dp);
+        mDeleteIconState = mDeleteIcon.getConstantState();
+        deleteIconColorFilter = options.mChipDeleteIconColor != null
+                ? new PorterDuffColorFilter(options.mChipDeleteIconColor.getDefaultColor(),
+                        PorterDuff.Mode.SRC_ATOP)
+                : null;
+        deleteIconAlpha = (int)(options.mDeleteIconAlpha * 255);
+        flatDeleteIcon = newDeleteIcon(res).mutate();
+        flatDeleteIcon.setColorFilter(deleteIconColorFilter);
+        flatDeleteIcon.setAlpha(deleteIconAlpha);
+
+        filterableBackgroundColorFilter = options.mFilterableListBackgroundColor != null
+                ? new PorterDuffColorFilter(options.mFilterableListBackgroundColor
+                        .getDefaultColor(), PorterDuff.Mode.SRC_ATOP)
+                : null;
+        filterableTextColor = options.mFilterableListTextColor;
+    }
+
+    /**
+     * Creates a delete icon for a chip view, sharing its data with every other one.
+     *
+     * @param res {@link Resources}
+     * @return Delete icon
+     */
+    Drawable newDeleteIcon(Resources res) {
+        return mDeleteIconState != null
+                ? mDeleteIconState.newDrawable(res)
+                : mDeleteIcon;
+    }
+}
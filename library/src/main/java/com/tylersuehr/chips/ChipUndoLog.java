@@ -0,0 +1,235 @@
+package com.tylersuehr.chips;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Bounded log of the chips selected and unselected in a {@link ChipDataSource}, so
+ * those changes can be undone and redone.
+ *
+ * Each record is just the chip and what happened to it, kept in a ring buffer that
+ * grows as needed. Records are grouped by change to the data source, so something
+ * like clearing the selected chips is undone as a whole, and the limit counts those
+ * changes rather than chips; once there are more, the oldest changes are forgotten.
+ * Nothing is recorded while the limit is 0, which it is by default.
+ *
+ * Undoing or redoing a change applies the opposite (or the same) selection change to
+ * the data source, so it's a small change that observers get notified about as usual,
+ * rather than setting all the chips again.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipUndoLog {
+    private static final byte SELECTED = 1;
+    private static final byte UNSELECTED = 2;
+    /* Flag of the first record of a change */
+    private static final byte GROUP_START = 4;
+    private static final int MIN_CAPACITY = 8;
+
+    /* Maximum number of changes kept, or 0 if none are recorded */
+    private int mLimit;
+    private Chip[] mChips = new Chip[0];
+    private byte[] mOps = new byte[0];
+    /* Index of the oldest record */
+    private int mHead;
+    /* Number of records, including ones that have been undone */
+    private int mSize;
+    /* Number of records that haven't been undone */
+    private int mCursor;
+    /* Number of changes recorded, including ones that have been undone */
+    private int mGroups;
+
+    /* True if the next record starts a new change */
+    private boolean mGroupPending = true;
+    /* True while undoing or redoing, so the changes applied aren't recorded */
+    private boolean mApplying;
+
+
+    /**
+     * Sets the maximum number of changes kept, forgetting the oldest ones if there
+     * are more. A limit of 0 forgets everything, and stops recording changes.
+     *
+     * @param limit Maximum number of changes
+     */
+    void setLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative!");
+        }
+        mLimit = limit;
+        if (limit == 0) {
+            clear();
+        }
+        while (mGroups > limit) {
+            dropOldestGroup();
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mChips[index(i)] = null;
+        }
+        mHead = mSize = mCursor = mGroups = 0;
+        mGroupPending = true;
+    }
+
+    boolean canUndo() {
+        return mCursor > 0;
+    }
+
+    boolean canRedo() {
+        return mCursor < mSize;
+    }
+
+    /* Called when the data source changed, so the next record starts a new change */
+    void startGroup() {
+        if (!mApplying) {
+            mGroupPending = true;
+        }
+    }
+
+    void recordSelected(Chip chip) {
+        record(SELECTED, chip);
+    }
+
+    void recordUnselected(Chip chip) {
+        record(UNSELECTED, chip);
+    }
+
+    /**
+     * Undoes the last change that hasn't been undone.
+     *
+     * @param dataSource {@link ChipDataSource} the change was made to
+     * @return True if a change was undone
+     */
+    boolean undo(ChipDataSource dataSource) {
+        if (mCursor == 0) { return false; }
+        int start = mCursor - 1;
+        while ((mOps[index(start)] & GROUP_START) == 0) {
+            start--;
+        }
+
+        final List<Chip> reselected = new ArrayList<>();
+        mApplying = true;
+        try {
+            for (int i = mCursor - 1; i >= start; i--) {
+                final Chip chip = mChips[index(i)];
+                if ((mOps[index(i)] & SELECTED) != 0) {
+                    unselect(dataSource, chip);
+                } else if (!dataSource.existsInSelected(chip)) {
+                    reselected.add(0, chip);
+                }
+            }
+            if (!reselected.isEmpty()) {
+                Utils.takeChips(dataSource, reselected);
+            }
+        } finally {
+            mApplying = false;
+        }
+        mCursor = start;
+        mGroupPending = true;
+        return true;
+    }
+
+    /**
+     * Redoes the last change that was undone.
+     *
+     * @param dataSource {@link ChipDataSource} the change was made to
+     * @return True if a change was redone
+     */
+    boolean redo(ChipDataSource dataSource) {
+        if (mCursor == mSize) { return false; }
+        int end = mCursor + 1;
+        while (end < mSize && (mOps[index(end)] & GROUP_START) == 0) {
+            end++;
+        }
+
+        final List<Chip> reselected = new ArrayList<>();
+        mApplying = true;
+        try {
+            for (int i = mCursor; i < end; i++) {
+                final Chip chip = mChips[index(i)];
+                if ((mOps[index(i)] & UNSELECTED) != 0) {
+                    unselect(dataSource, chip);
+                } else if (!dataSource.existsInSelected(chip)) {
+                    reselected.add(chip);
+                }
+            }
+            if (!reselected.isEmpty()) {
+                Utils.takeChips(dataSource, reselected);
+            }
+        } finally {
+            mApplying = false;
+        }
+        mCursor = end;
+        mGroupPending = true;
+        return true;
+    }
+
+    private void record(byte op, Chip chip) {
+        if (mApplying || mLimit == 0) { return; }
+
+        // A new change can't be redone after, so forget the undone ones
+        for (int i = mCursor; i < mSize; i++) {
+            if ((mOps[index(i)] & GROUP_START) != 0) {
+                mGroups--;
+            }
+            mChips[index(i)] = null;
+        }
+        mSize = mCursor;
+
+        if (mGroupPending) {
+            mGroupPending = false;
+            op |= GROUP_START;
+            if (mGroups == mLimit) {
+                dropOldestGroup();
+            }
+            mGroups++;
+        }
+        if (mSize == mChips.length) {
+            grow();
+        }
+        final int tail = index(mSize);
+        mChips[tail] = chip;
+        mOps[tail] = op;
+        mCursor = ++mSize;
+    }
+
+    private void dropOldestGroup() {
+        int dropped = 0;
+        do {
+            mChips[mHead] = null;
+            mHead = (mHead + 1) % mChips.length;
+            dropped++;
+        } while (dropped < mSize && (mOps[mHead] & GROUP_START) == 0);
+        mSize -= dropped;
+        mCursor = Math.max(0, mCursor - dropped);
+        mGroups--;
+    }
+
+    /* Doubles the capacity of the ring buffer, moving the oldest record to the start */
+    private void grow() {
+        final int capacity = Math.max(MIN_CAPACITY, mChips.length << 1);
+        final Chip[] chips = new Chip[capacity];
+        final byte[] ops = new byte[capacity];
+        for (int i = 0; i < mSize; i++) {
+            chips[i] = mChips[index(i)];
+            ops[i] = mOps[index(i)];
+        }
+        mChips = chips;
+        mOps = ops;
+        mHead = 0;
+    }
+
+    private int index(int i) {
+        return (mHead + i) % mChips.length;
+    }
+
+    private static void unselect(ChipDataSource dataSource, Chip chip) {
+        // The chip may have been unselected by a change that wasn't recorded
+        if (dataSource.existsInSelected(chip)) {
+            dataSource.replaceChip(chip);
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.tylersuehr.chips;
 import android.content.Context;
-import android.graphics.PorterDuff;
 import android.os.Build;
 import androidx.annotation.NonNull;
 import androidx.constraintlayout.widget.ConstraintLayout;
@@ -25,6 +24,11 @@ public class ChipView extends FrameLayout implements ChipComponent {
     private TextView mLabelView;
     private Chip mChip;
     private ConstraintLayout mContainer;
+    private ChipOptions mOptions;
+    /* Style last applied, which doesn't need to be applied again */
+    private ChipStyle mStyle;
+    /* What's displayed of the chip, so only the parts that changed are displayed again */
+    private final ChipBinding mBinding = new ChipBinding();
 
 
     ChipView(@NonNull Context context) {
@@ -38,54 +42,9 @@ public class ChipView extends FrameLayout implements ChipComponent {
 
     @Override
     public void setChipOptions(ChipOptions options) {
-        // Options will permit showing/hiding avatar
-        if (!options.mShowAvatar) {
-            // Hide the avatar image
-            mAvatarView.setVisibility(GONE);
-
-            // Adjust left label margins according to the
-            // Google Material Design Guide.
-            ConstraintLayout.LayoutParams lp = (ConstraintLayout
-                    .LayoutParams)mLabelView.getLayoutParams();
-            lp.leftMargin = (int)(12f * getResources().getDisplayMetrics().density);
-        }
-
-        // Options will permit showing/hiding delete button
-        if (!options.mShowDelete) {
-            // Hide the delete button
-            mButtonDelete.setVisibility(GONE);
-
-            // Adjust right label margins according to the
-            // Google Material Design Guide.
-            ConstraintLayout.LayoutParams lp = (ConstraintLayout
-                    .LayoutParams)mLabelView.getLayoutParams();
-            lp.rightMargin = (int)(12f * getResources().getDisplayMetrics().density);
-        }
-
-        // Set other options
-        if (options.mChipDeleteIcon != null) {
-            mButtonDelete.setImageDrawable(options.mChipDeleteIcon);
-        }
-        if (options.mChipBackgroundColor != null) {
-            setBackgroundColor(options.mChipBackgroundColor.getDefaultColor());
-        }
-        if (options.mChipDeleteIconColor != null) {
-            mButtonDelete.setColorFilter(options.mChipDeleteIconColor
-                    .getDefaultColor(), PorterDuff.Mode.SRC_ATOP);
-        }
-        if (options.mChipTextColor != null) {
-            mLabelView.setTextColor(options.mChipTextColor);
-        }
-
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            mContainer.setBackgroundTintList(options.mChipColor);
-        }
-
-        mButtonDelete.setAlpha(options.mDeleteIconAlpha);
-
-        mLabelView.setTypeface(options.mTypeface);
-
+        mOptions = options;
         mImageRenderer = options.mImageRenderer;
+        applyStyle(options.getStyle(getContext()));
     }
 
     /**
@@ -94,6 +53,7 @@ public class ChipView extends FrameLayout implements ChipComponent {
      */
     public void inflateFromChip(Chip chip) {
         mChip = chip;
+        mBinding.update(chip);
         mLabelView.setText(mChip.getTitle());
 
         if (mImageRenderer == null) {
@@ -102,6 +62,81 @@ public class ChipView extends FrameLayout implements ChipComponent {
         mImageRenderer.renderAvatar(mAvatarView, chip);
     }
 
+    /**
+     * Displays the given chip, only updating the parts of it that changed since it
+     * was last displayed, or that are given as changed.
+     *
+     * @param chip {@link Chip}
+     * @param changes Parts to display again, even if they look the same
+     */
+    void bindChip(Chip chip, int changes) {
+        mChip = chip;
+        changes |= mBinding.update(chip);
+        if ((changes & ChipDataSource.CHANGE_STYLE) != 0 && mOptions != null) {
+            setChipOptions(mOptions);
+        }
+        if ((changes & ChipDataSource.CHANGE_TITLE) != 0) {
+            mLabelView.setText(chip.getTitle());
+        }
+        if ((changes & ChipDataSource.CHANGE_AVATAR) != 0) {
+            if (mImageRenderer == null) {
+                throw new NullPointerException("Image renderer must be set!");
+            }
+            mImageRenderer.renderAvatar(mAvatarView, chip);
+        }
+    }
+
+    /**
+     * Displays this as the summary of chips that are collapsed, showing only how many
+     * chips are hidden, instead of a chip.
+     *
+     * @param hiddenCount Number of chips hidden
+     */
+    void bindSummary(int hiddenCount) {
+        mChip = null;
+        mAvatarView.setVisibility(GONE);
+        mButtonDelete.setVisibility(GONE);
+
+        // Same margins as a chip without an avatar or delete button
+        ConstraintLayout.LayoutParams lp = (ConstraintLayout
+                .LayoutParams)mLabelView.getLayoutParams();
+        lp.leftMargin = lp.rightMargin = mStyle != null
+                ? mStyle.edgeMargin
+                : (int)(12f * getResources().getDisplayMetrics().density);
+        mLabelView.setText(getResources().getString(R.string.chips_summary, hiddenCount));
+    }
+
+    private void applyStyle(ChipStyle style) {
+        if (style == mStyle) { return; }
+        mStyle = style;
+
+        // Options will permit showing/hiding avatar and delete button
+        mAvatarView.setVisibility(style.showAvatar ? VISIBLE : GONE);
+        mButtonDelete.setVisibility(style.showDelete ? VISIBLE : GONE);
+        ConstraintLayout.LayoutParams lp = (ConstraintLayout
+                .LayoutParams)mLabelView.getLayoutParams();
+        if (lp.leftMargin != style.labelLeftMargin || lp.rightMargin != style.labelRightMargin) {
+            lp.leftMargin = style.labelLeftMargin;
+            lp.rightMargin = style.labelRightMargin;
+            mLabelView.setLayoutParams(lp);
+        }
+
+        // Set other options
+        mButtonDelete.setImageDrawable(style.newDeleteIcon(getResources()));
+        mButtonDelete.setColorFilter(style.deleteIconColorFilter);
+        mButtonDelete.setAlpha(style.deleteIconAlpha / 255f);
+        if (style.backgroundColor != null) {
+            setBackgroundColor(style.backgroundColor);
+        } else {
+            setBackground(null);
+        }
+        mLabelView.setTextColor(style.textColor);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            mContainer.setBackgroundTintList(style.chipTint);
+        }
+        mLabelView.setTypeface(style.typeface);
+    }
+
     public Chip getChip() {
         return mChip;
     }
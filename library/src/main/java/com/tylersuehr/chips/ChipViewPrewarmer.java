@@ -0,0 +1,74 @@
+package com.tylersuehr.chips;
+import android.os.Looper;
+import android.os.MessageQueue;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Creates view holders for a recycler view ahead of time, and puts them in its pool of
+ * recycled views, so they're only bound (not created) when first displayed, like when
+ * the user types the first character and the filterable chips are shown.
+ *
+ * Holders are created one at a time, only while the main thread is idle, so creating
+ * them never delays a frame. Views are created on the main thread, like they would be
+ * by the recycler view itself, since the chip views can't safely be built on another.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class ChipViewPrewarmer implements MessageQueue.IdleHandler {
+    /* Number of holders a pool keeps of each view type, by default */
+    private static final int DEFAULT_MAX_RECYCLED_VIEWS = 5;
+
+    private final RecyclerView mRecycler;
+    private final int mViewType;
+    private final int mCount;
+
+
+    private ChipViewPrewarmer(RecyclerView recycler, int viewType, int count) {
+        mRecycler = recycler;
+        mViewType = viewType;
+        mCount = count;
+    }
+
+    /**
+     * Creates holders of the given view type, while the main thread is idle, until the
+     * pool of the given recycler view has the given number of them. This must be called
+     * on the main thread.
+     *
+     * A shared pool keeps the max sizes it was given, so no more holders are created
+     * than it can keep.
+     *
+     * @param recycler {@link RecyclerView} with an adapter
+     * @param viewType View type of the holders to create
+     * @param count Number of holders the pool should have
+     * @param shared True if the pool of the recycler view is shared
+     */
+    static void prewarm(RecyclerView recycler, int viewType, int count, boolean shared) {
+        if (count <= 0) { return; }
+
+        // Make sure the pool can keep them all
+        if (!shared) {
+            recycler.getRecycledViewPool().setMaxRecycledViews(viewType,
+                    Math.max(count, DEFAULT_MAX_RECYCLED_VIEWS));
+        }
+        Looper.myQueue().addIdleHandler(new ChipViewPrewarmer(recycler, viewType, count));
+    }
+
+    @Override
+    public boolean queueIdle() {
+        final RecyclerView.Adapter adapter = mRecycler.getAdapter();
+        final RecyclerView.RecycledViewPool pool = mRecycler.getRecycledViewPool();
+        final int count = pool.getRecycledViewCount(mViewType);
+        if (adapter == null || count >= mCount) {
+            return false;
+        }
+
+        pool.putRecycledView(adapter.createViewHolder(mRecycler, mViewType));
+
+        // Keep going the next time the main thread is idle, unless the pool is full
+        final int newCount = pool.getRecycledViewCount(mViewType);
+        return newCount > count && newCount < mCount;
+    }
+}
@@ -3,9 +3,10 @@ import androidx.recyclerview.widget.RecyclerView;
 import android.text.TextUtils;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.ViewTreeObserver;
 import android.widget.RelativeLayout;
 
+import java.util.List;
+
 /**
  * Copyright © 2017 Tyler Suehr
  *
@@ -24,13 +25,34 @@ import android.widget.RelativeLayout;
  */
 class ChipsAdapter
         extends RecyclerView.Adapter<RecyclerView.ViewHolder>
-        implements ChipsEditText.OnKeyboardListener, ChipDataSource.ChangeObserver {
+        implements ChipsEditText.OnKeyboardListener, ChipDataSource.ChipChangeObserver {
     private static final int CHIP  = 0;
     private static final int INPUT = 1;
-
-    private final ChipDataSource mDataSource;
+    private static final int SUMMARY = 2;
+    private static final int FLAT_CHIP = 3;
+    private static final int FLAT_SUMMARY = 4;
+
+    /* What backspace does to the chips in front of an empty input */
+    static final int BACKSPACE_IGNORED = 0;
+    static final int BACKSPACE_EXPANDS = 1;
+    static final int BACKSPACE_REMOVES = 2;
+
+    private ChipDataSource mDataSource;
+    /* Selected chips of the data source as of its last change, and how many there are */
+    private List<Chip> mSelected;
+    private int mSelectedCount;
+    /* Chips removed by backspace that this hasn't been notified of yet, if coalesced */
+    private int mBackspaced;
     private final ChipOptions mOptions;
     private final ChipsEditText mEditText;
+    /* True while this is registered as an observer of the data source */
+    private boolean mObserving;
+    /* Displayed selected chips, if they're diffed in the background; otherwise null */
+    private ChipListDiffer mDiffer;
+    /* Stable ids of the displayed chips */
+    private final ChipIdMap mIds = new ChipIdMap();
+    /* True if all the chips are displayed, even if there are too many to not be collapsed */
+    private boolean mExpanded;
 
 
     ChipsAdapter(ChipDataSource dataSource,
@@ -39,39 +61,86 @@ class ChipsAdapter
         mDataSource = dataSource;
         mEditText = editText;
         mOptions = options;
+        updateSelected();
         mEditText.setKeyboardListener(this);
-
-        // Register an observer on the chip data source
-        mDataSource.addChangedObserver(this);
+        setHasStableIds(true);
     }
 
     @Override
     public int getItemViewType(int position) {
-        return position < mDataSource
-                .getSelectedChips().size() ? CHIP : INPUT;
+        final int shown = getShownChipCount();
+        if (position < shown) {
+            return mOptions.mFlatChips ? FLAT_CHIP : CHIP;
+        }
+        if (position == shown && hasSummary()) {
+            return mOptions.mFlatChips ? FLAT_SUMMARY : SUMMARY;
+        }
+        return INPUT;
     }
 
     @Override
     public int getItemCount() {
-        // Plus 1 for the edit text
-        return mDataSource.getSelectedChips().size() + 1;
+        // Plus 1 for the summary, if any, and 1 for the edit text
+        return getShownChipCount() + (hasSummary() ? 2 : 1);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        final int shown = getShownChipCount();
+        if (position < shown) {
+            return mIds.getId(getChip(position));
+        }
+        return position == shown && hasSummary() ? ChipIdMap.SUMMARY_ID : ChipIdMap.INPUT_ID;
     }
 
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        return viewType == CHIP
-                ? new ChipHolder(new ChipView(parent.getContext()))
-                : new RecyclerView.ViewHolder(mEditText) {};
+        switch (viewType) {
+            case CHIP:
+            case SUMMARY:
+                return new ChipHolder(new ChipView(parent.getContext()),
+                        this, viewType == SUMMARY);
+            case FLAT_CHIP:
+            case FLAT_SUMMARY:
+                return new FlatChipHolder(new FlatChipView(parent.getContext()),
+                        this, viewType == FLAT_SUMMARY);
+            default:
+                // The input belongs to this adapter, so it's never put in a
+                // pool that may be shared with other adapters
+                final RecyclerView.ViewHolder holder = new RecyclerView.ViewHolder(mEditText) {};
+                holder.setIsRecyclable(false);
+                return holder;
+        }
+    }
+
+    @Override
+    public void onBindViewHolder(RecyclerView.ViewHolder holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty() || !(holder instanceof BaseChipHolder)
+                || ((BaseChipHolder)holder).summary) {
+            onBindViewHolder(holder, position);
+        } else {
+            // Only display the parts of the chip that changed
+            final Chip chip = getChip(position);
+            final BaseChipHolder ch = (BaseChipHolder)holder;
+            adopt(ch);
+            ch.bindChip(chip, ChipBinding.changesOf(payloads, chip));
+        }
     }
 
     @Override
     public void onBindViewHolder(RecyclerView.ViewHolder holder, int position) {
-        if (getItemViewType(position) == CHIP) { // Chips
-            // Display the chip information on the chip view
-            final ChipHolder ch = (ChipHolder)holder;
-            ch.chipView.inflateFromChip(mDataSource.getSelectedChip(position));
+        if (holder instanceof BaseChipHolder) {
+            final BaseChipHolder ch = (BaseChipHolder)holder;
+            adopt(ch);
+            if (ch.summary) { // Summary of collapsed chips
+                ch.bindSummary(getChipCount() - getShownChipCount());
+            } else { // Chips
+                // Display the chip information on the chip view; stable ids bring back
+                // the holder that displayed this chip, so only what changed is updated
+                ch.bindChip(getChip(position), 0);
+            }
         } else { // EditText
-            if (mDataSource.getSelectedChips().size() == 0) {
+            if (mSelectedCount == 0) {
                 mEditText.setHint(mOptions.mHint);
             }
 
@@ -104,58 +173,243 @@ class ChipsAdapter
     @Override
     public void onKeyboardBackspace() {
         // Only remove the last chip if the input was empty
-        if (mDataSource.getSelectedChips().size() > 0
-                && mEditText.getText().length() == 0) {
-            // Will trigger notifyDataSetChanged()
-            mDataSource.replaceChip(mDataSource.getSelectedChips().size() - 1);
+        if (mEditText.getText().length() > 0) { return; }
+        final int count = mSelectedCount - mBackspaced;
+        switch (getBackspaceAction(count, isCollapsed(count))) {
+            case BACKSPACE_EXPANDS:
+                setExpanded(true);
+                break;
+            case BACKSPACE_REMOVES:
+                // Counted first, since this may be notified of the change before it returns
+                mBackspaced++;
+                mDataSource.replaceChip(count - 1);
+                break;
+        }
+    }
+
+    /**
+     * Gets what backspace does to the given number of chips in front of an empty input.
+     * The last chip is removed, unless it's hidden behind the summary chip; then the
+     * chips are expanded instead, so the user sees the chip the next backspace removes.
+     *
+     * @param count Number of selected chips
+     * @param collapsed True if the chips are collapsed
+     * @return {@link #BACKSPACE_IGNORED}, {@link #BACKSPACE_EXPANDS}, or {@link #BACKSPACE_REMOVES}
+     */
+    static int getBackspaceAction(int count, boolean collapsed) {
+        if (count == 0) {
+            return BACKSPACE_IGNORED;
         }
+        return collapsed ? BACKSPACE_EXPANDS : BACKSPACE_REMOVES;
     }
 
     @Override
     public void onChipDataSourceChanged() {
+        // Layout asks for the chips many times, so they're only gotten once per change
+        updateSelected();
+        if (mDiffer != null) {
+            if (!hasSummary() && !isCollapsed(mSelectedCount)) {
+                mDiffer.submit(mSelected);
+                return;
+            }
+
+            // The summary isn't in the diffed chips, so collapsed chips are displayed
+            // again instead; there are only ever a few of them
+            mDiffer.reset(mSelected);
+        }
+        mIds.trim(mSelected, mSelectedCount);
         notifyDataSetChanged();
     }
 
-    private void autoFitEditText() {
-        // Set the EditText to a minimum width of its hint length
-        ViewGroup.LayoutParams lp = mEditText.getLayoutParams();
-        lp.width = (int)mEditText.calculateTextWidth();
-        mEditText.setLayoutParams(lp);
+    @Override
+    public void onChipChanged(Chip chip, int changes) {
+        final int position = (mDiffer != null ? mDiffer.getList() : mSelected).indexOf(chip);
+        if (position > -1 && position < getShownChipCount()) {
+            notifyItemChanged(position, ChipBinding.payload(chip, changes));
+        }
+    }
 
-        // Listen to changes in the tree
-        mEditText.getViewTreeObserver().addOnGlobalLayoutListener(
-                new ViewTreeObserver.OnGlobalLayoutListener() {
-            @Override
-            public void onGlobalLayout() {
-                // Get right of recycler and left of edit text
-                final View parent = (View)mEditText.getParent();
-                int right = parent.getRight();
-                int left = mEditText.getLeft();
-
-                // Calculate the available space left to draw the EditText,
-                // and only readjust the EditText when the available space
-                // is larger than the needed space.
-                //
-                // This will allow the full text hint to always be visible
-                // by ensuring the EditText gets wrapped to the next line
-                // if it can't fit in the available space.
-                final int available = (right - left - Utils.dp(8));
-                ViewGroup.LayoutParams lp = mEditText.getLayoutParams();
-                if (lp.width < available) {
-                    lp.width = available;
-                    mEditText.setLayoutParams(lp);
+    /**
+     * Sets how many holders of each view type of this adapter the given pool keeps,
+     * for a pool shared by several layouts.
+     *
+     * @param pool {@link RecyclerView.RecycledViewPool}
+     */
+    static void setMaxRecycledViews(RecyclerView.RecycledViewPool pool) {
+        // Enough for the rows of a few layouts; there's at most one summary per layout
+        pool.setMaxRecycledViews(CHIP, 32);
+        pool.setMaxRecycledViews(FLAT_CHIP, 32);
+        pool.setMaxRecycledViews(SUMMARY, 4);
+        pool.setMaxRecycledViews(FLAT_SUMMARY, 4);
+        pool.setMaxRecycledViews(INPUT, 0);
+    }
+
+    /**
+     * Gets the view type of the selected chips, depending on the options.
+     * @return View type
+     */
+    int getChipViewType() {
+        return mOptions.mFlatChips ? FLAT_CHIP : CHIP;
+    }
+
+    /**
+     * Displays the style of every chip again, after the options changed.
+     */
+    void notifyStyleChanged() {
+        notifyItemRangeChanged(0, getItemCount() - 1, ChipBinding.STYLE_PAYLOAD);
+    }
+
+    /**
+     * Sets whether all the chips are displayed, or if there are more chips than the
+     * options allow when collapsed, only the first ones followed by a summary ("+N")
+     * of the rest, which expands them when clicked.
+     *
+     * @param expanded True if all the chips should be displayed
+     */
+    void setExpanded(boolean expanded) {
+        mExpanded = expanded;
+        if (mDiffer != null) {
+            mDiffer.reset(mSelected);
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Sets whether changes to the selected chips are diffed in the background, and
+     * dispatched as item updates, instead of refreshing every chip.
+     *
+     * @param enabled True if changes should be diffed
+     */
+    void setAsyncDiffingEnabled(boolean enabled) {
+        if (enabled == (mDiffer != null)) { return; }
+        if (enabled) {
+            mDiffer = new ChipListDiffer(this, new Runnable() {
+                @Override
+                public void run() {
+                    mIds.trim(mDiffer.getList(), getChipCount());
+
+                    // The input isn't diffed, so rebind it to fit the chips in front of it
+                    notifyItemChanged(getItemCount() - 1);
                 }
+            });
+            mDiffer.reset(mSelected);
+        } else {
+            mDiffer = null;
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Changes the data source this adapts, and observes it instead of the current one.
+     * @param dataSource {@link ChipDataSource}
+     */
+    void setDataSource(ChipDataSource dataSource) {
+        if (mObserving) {
+            mDataSource.removeChangedObserver(this);
+            dataSource.addChangedObserver(this);
+        }
+        mDataSource = dataSource;
+        mExpanded = false;
+        updateSelected();
+        if (mDiffer != null) {
+            mDiffer.reset(mSelected);
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Starts observing the data source, catching up on any change missed while
+     * this wasn't observing it. Called when the layout is attached to a window.
+     */
+    void startObserving() {
+        if (mObserving) { return; }
+        mObserving = true;
+        mDataSource.addChangedObserver(this);
+        onChipDataSourceChanged();
+    }
+
+    /**
+     * Stops observing the data source, so a detached layout isn't notified, or kept
+     * from being collected, by a data source that outlives it.
+     */
+    void stopObserving() {
+        if (!mObserving) { return; }
+        mObserving = false;
+        mDataSource.removeChangedObserver(this);
+    }
 
-                // Request focus
-                mEditText.requestFocus();
+    private void updateSelected() {
+        mSelected = mDataSource.getSelectedChips();
+        mSelectedCount = mSelected.size();
+        mBackspaced = 0;
+    }
+
+    private int getChipCount() {
+        return mDiffer != null ? mDiffer.getList().size() : mSelectedCount;
+    }
+
+    /* Gets the number of chips displayed, which is less than all of them if collapsed */
+    private int getShownChipCount() {
+        final int count = getChipCount();
+        return isCollapsed(count) ? mOptions.mCollapsedChipCount : count;
+    }
 
-                // Remove the tree listener
-                mEditText.getViewTreeObserver().removeOnGlobalLayoutListener(this);
+    private boolean hasSummary() {
+        return getShownChipCount() < getChipCount();
+    }
+
+    /* True if the given number of chips are too many to all be displayed */
+    private boolean isCollapsed(int count) {
+        return !mExpanded && mOptions.mCollapsedChipCount > 0
+                && count > mOptions.mCollapsedChipCount;
+    }
+
+    private Chip getChip(int position) {
+        return mDiffer != null ? mDiffer.getList().get(position) : mSelected.get(position);
+    }
+
+    /* Takes over a holder another adapter created, if it came from a shared pool */
+    private void adopt(BaseChipHolder holder) {
+        if (holder.adapter != this) {
+            holder.adapter = this;
+            holder.setChipOptions(mOptions);
+        }
+    }
+
+    /* Unselects the chip displayed at the given position */
+    private void replaceChip(int position) {
+        if (mDiffer != null) {
+            // The displayed chips may be behind the data source while diffing
+            final Chip chip = mDiffer.getList().get(position);
+            if (mDataSource.existsInSelected(chip)) {
+                mDataSource.replaceChip(chip);
             }
-        });
+        } else {
+            mDataSource.replaceChip(position);
+        }
+    }
+
+    private void autoFitEditText() {
+        // Set the EditText to a minimum width of its hint length, which will get
+        // it wrapped to the next line if the hint can't fit in the space left.
+        // The EditText fills the rest of its line itself, when it's laid out.
+        //
+        // The layout params only change when the hint does, so binding the input
+        // again doesn't request another layout.
+        final int width = mEditText.getHintWidth();
+        ViewGroup.LayoutParams lp = mEditText.getLayoutParams();
+        if (lp.width != width) {
+            lp.width = width;
+            mEditText.setLayoutParams(lp);
+        }
+
+        // Request focus
+        if (!mEditText.hasFocus()) {
+            mEditText.requestFocus();
+        }
     }
 
-    private void showDetailedChipView(ChipView view, Chip chip, final int position) {
+    private void showDetailedChipView(View view, Chip chip, final int position) {
         // Get chip view's location
         int[] coord = new int[2];
         view.getLocationInWindow(coord);
@@ -173,7 +427,7 @@ class ChipsAdapter
             @Override
             public void onClick(View v) {
                 // Will trigger notifyDataSetChanged()
-                mDataSource.replaceChip(position);
+                replaceChip(position);
                 detailedChipView.fadeOut();
             }
         });
@@ -213,41 +467,137 @@ class ChipsAdapter
 
 
     /**
-     * Nested inner-subclass of {@link RecyclerView.ViewHolder} that stores
+     * Nested subclass of {@link RecyclerView.ViewHolder} that's the base of holders
+     * of the views displaying a chip, or the summary of collapsed chips.
+     *
+     * Holders can be shared with other adapters through a shared pool, so they keep
+     * the adapter they were last bound by, instead of the one that created them.
+     */
+    private static abstract class BaseChipHolder extends RecyclerView.ViewHolder {
+        /* True if this displays the summary of collapsed chips */
+        final boolean summary;
+        /* Adapter this was last bound by */
+        ChipsAdapter adapter;
+
+        BaseChipHolder(View v, ChipsAdapter adapter, boolean summary) {
+            super(v);
+            this.adapter = adapter;
+            this.summary = summary;
+        }
+
+        abstract void setChipOptions(ChipOptions options);
+
+        abstract void bindChip(Chip chip, int changes);
+
+        abstract void bindSummary(int hiddenCount);
+
+        void onClicked(View v) {
+            if (summary) {
+                // Only now are the rest of the chips created and laid out
+                adapter.setExpanded(true);
+                return;
+            }
+            final int position = getAdapterPosition();
+            if (position > -1 && adapter.mOptions.mShowDetails) {
+                final Chip chip = adapter.getChip(position);
+                adapter.showDetailedChipView(v, chip, position);
+            }
+        }
+
+        void onDeleted() {
+            // Will trigger notifyDataSetChanged()
+            final int position = getAdapterPosition();
+            if (position > -1){
+                adapter.replaceChip(position);
+            }
+        }
+    }
+
+
+    /**
+     * Nested subclass of {@link BaseChipHolder} that stores
      * reference to the a chip view.
      */
-    private class ChipHolder extends RecyclerView.ViewHolder implements
+    private static class ChipHolder extends BaseChipHolder implements
             ChipView.OnChipClickListener, ChipView.OnChipDeleteListener {
         ChipView chipView;
 
-        ChipHolder(ChipView chipView) {
-            super(chipView);
+        ChipHolder(ChipView chipView, ChipsAdapter adapter, boolean summary) {
+            super(chipView, adapter, summary);
             this.chipView = chipView;
-            this.chipView.setChipOptions(mOptions);
+            this.chipView.setChipOptions(adapter.mOptions);
             this.chipView.setOnDeleteClicked(this);
-            if (mOptions.mShowDetails) {
-                this.chipView.setOnChipClicked(this);
-            } else {
-                this.chipView.setOnChipClicked(null);
-            }
+            this.chipView.setOnChipClicked(this);
+        }
+
+        @Override
+        void setChipOptions(ChipOptions options) {
+            chipView.setChipOptions(options);
+        }
+
+        @Override
+        void bindChip(Chip chip, int changes) {
+            chipView.bindChip(chip, changes);
+        }
+
+        @Override
+        void bindSummary(int hiddenCount) {
+            chipView.setChipOptions(adapter.mOptions);
+            chipView.bindSummary(hiddenCount);
         }
 
         @Override
         public void onChipClicked(ChipView v) {
-            final int position = getAdapterPosition();
-            if (position > -1) {
-                final Chip chip = mDataSource.getSelectedChip(position);
-                showDetailedChipView(v, chip, position);
-            }
+            onClicked(v);
         }
 
         @Override
         public void onChipDeleted(ChipView v) {
-            // Will trigger notifyDataSetChanged()
-            final int position = getAdapterPosition();
-            if (position > -1){
-                mDataSource.replaceChip(position);
-            }
+            onDeleted();
+        }
+    }
+
+
+    /**
+     * Nested subclass of {@link BaseChipHolder} that stores
+     * reference to a flat chip view.
+     */
+    private static class FlatChipHolder extends BaseChipHolder implements
+            FlatChipView.OnChipClickListener, FlatChipView.OnChipDeleteListener {
+        FlatChipView chipView;
+
+        FlatChipHolder(FlatChipView chipView, ChipsAdapter adapter, boolean summary) {
+            super(chipView, adapter, summary);
+            this.chipView = chipView;
+            this.chipView.setChipOptions(adapter.mOptions);
+            this.chipView.setOnDeleteClicked(this);
+            this.chipView.setOnChipClicked(this);
+        }
+
+        @Override
+        void setChipOptions(ChipOptions options) {
+            chipView.setChipOptions(options);
+        }
+
+        @Override
+        void bindChip(Chip chip, int changes) {
+            chipView.bindChip(chip, changes);
+        }
+
+        @Override
+        void bindSummary(int hiddenCount) {
+            chipView.setChipOptions(adapter.mOptions);
+            chipView.bindSummary(hiddenCount);
+        }
+
+        @Override
+        public void onChipClicked(FlatChipView v) {
+            onClicked(v);
+        }
+
+        @Override
+        public void onChipDeleted(FlatChipView v) {
+            onDeleted();
         }
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,12 @@
 package com.tylersuehr.chips;
 import android.content.Context;
-import android.graphics.Paint;
+import android.graphics.Typeface;
 import android.os.Build;
 import androidx.appcompat.widget.AppCompatEditText;
 import android.text.InputType;
+import android.text.TextUtils;
 import android.view.KeyEvent;
+import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputConnection;
@@ -26,6 +28,15 @@ import android.widget.RelativeLayout;
  */
 class ChipsEditText extends AppCompatEditText implements ChipComponent {
     private OnKeyboardListener mKeyboardListener;
+    /* Space kept between this and the end of its line */
+    private final int mEndMargin = Utils.dp(8);
+    /* Hint last measured, and the text style it was measured with */
+    private CharSequence mMeasuredHint;
+    private Typeface mMeasuredTypeface;
+    private float mMeasuredTextSize;
+    private int mHintWidth;
+    /* Space left on its line when this was last laid out, or -1 if not laid out yet */
+    private int mAvailableWidth = -1;
 
 
     ChipsEditText(Context c) {
@@ -82,10 +93,65 @@ class ChipsEditText extends AppCompatEditText implements ChipComponent {
         setTypeface(options.mTypeface);
     }
 
-    float calculateTextWidth() {
-        final Paint paint = getPaint();
-        final String hint = getHint().toString();
-        return paint.measureText(hint);
+    /**
+     * Fills the rest of the line this is laid out on, so the input is as wide as the
+     * space left after the chips in front of it (to their left, in RTL).
+     *
+     * The space left is only known once this is positioned, so it's used here, while
+     * this is laid out, instead of after the whole layout pass; that would take another
+     * layout pass every time the chips change. Only this view is measured again, and
+     * only when the space left changes; otherwise it keeps the width its parent measured
+     * (its hint's), and is just laid out wider. It's a single line that scrolls
+     * horizontally, so its text doesn't depend on the width it was measured with.
+     */
+    @Override
+    public void layout(int l, int t, int r, int b) {
+        final View parent = (View)getParent();
+        if (parent != null) {
+            final boolean rtl = parent.getLayoutDirection() == LAYOUT_DIRECTION_RTL;
+            final int available = rtl
+                    ? r - parent.getPaddingEnd() - mEndMargin
+                    : parent.getWidth() - parent.getPaddingEnd() - l - mEndMargin;
+            if (r - l < available) {
+                if (available != mAvailableWidth) {
+                    measure(MeasureSpec.makeMeasureSpec(available, MeasureSpec.EXACTLY),
+                            MeasureSpec.makeMeasureSpec(b - t, MeasureSpec.EXACTLY));
+                }
+                if (rtl) {
+                    l = r - available;
+                } else {
+                    r = l + available;
+                }
+            }
+            mAvailableWidth = available;
+        }
+        super.layout(l, t, r, b);
+    }
+
+    /**
+     * Gets the width needed to show the whole hint. The hint is only measured again
+     * when it, or the style of its text, changed since it was last measured.
+     *
+     * Note: this is the width of this view showing the hint, so it includes the
+     * compound padding (padding and drawables) on both sides, not just the text.
+     *
+     * @return Width of the hint, with compound padding
+     */
+    int getHintWidth() {
+        final CharSequence hint = getHint();
+        final Typeface typeface = getPaint().getTypeface();
+        final float textSize = getTextSize();
+        if (!TextUtils.equals(hint, mMeasuredHint)
+                || typeface != mMeasuredTypeface
+                || textSize != mMeasuredTextSize) {
+            mMeasuredHint = hint;
+            mMeasuredTypeface = typeface;
+            mMeasuredTextSize = textSize;
+            mHintWidth = hint != null
+                    ? (int)Math.ceil(getPaint().measureText(hint, 0, hint.length()))
+                    : 0;
+        }
+        return mHintWidth + getCompoundPaddingLeft() + getCompoundPaddingRight();
     }
 
     void setKeyboardListener(OnKeyboardListener listener) {
@@ -0,0 +1,102 @@
+package com.tylersuehr.chips;
+import androidx.annotation.NonNull;
+import java.lang.ref.WeakReference;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Holds the chips of a {@link ChipsInputLayout} outside of it, so they survive
+ * configuration changes (like rotation) when this is kept somewhere that does too
+ * (like a ViewModel, or a retained fragment).
+ *
+ * This holds the chip data source, which has the filterable chips (or catalog and its
+ * search index) and the selected chips. When a new layout is attached, it starts using
+ * the same data source right away, so none of the chips have to be set, copied, or
+ * indexed again.
+ *
+ * Only one layout is attached at a time; attaching another detaches the previous one,
+ * and the holder never keeps the layout (or its activity) from being collected.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public final class ChipsInputHolder {
+    private ChipDataSource mDataSource;
+    private WeakReference<ChipsInputLayout> mAttached;
+    private boolean mHasFilterableChips;
+
+
+    public ChipsInputHolder() {
+        this(new ListChipDataSource());
+    }
+
+    public ChipsInputHolder(@NonNull ChipDataSource dataSource) {
+        if (dataSource == null) {
+            throw new NullPointerException("Data source cannot be null!");
+        }
+        mDataSource = dataSource;
+    }
+
+    /**
+     * Attaches the given layout, so it uses the chips held by this. The previously
+     * attached layout is detached, and keeps none of the chips.
+     *
+     * @param layout {@link ChipsInputLayout}
+     */
+    public void attach(@NonNull ChipsInputLayout layout) {
+        final ChipsInputLayout attached = getAttachedLayout();
+        if (attached == layout) { return; }
+        if (attached != null) {
+            attached.detachHolder();
+        }
+        mAttached = new WeakReference<>(layout);
+        layout.attachHolder(this);
+    }
+
+    /**
+     * Detaches the given layout, if it's attached. The chips held by this are kept
+     * for the next layout.
+     *
+     * @param layout {@link ChipsInputLayout}
+     */
+    public void detach(@NonNull ChipsInputLayout layout) {
+        if (getAttachedLayout() == layout) {
+            mAttached = null;
+            layout.detachHolder();
+        }
+    }
+
+    /**
+     * Gets the chip data source held by this. While a layout is attached, this is
+     * the data source it's using, even if it was changed.
+     *
+     * @return {@link ChipDataSource}
+     */
+    public ChipDataSource getChipDataSource() {
+        return mDataSource;
+    }
+
+    /**
+     * Checks if filterable chips were set on an attached layout, so they don't need
+     * to be loaded again for the next one.
+     *
+     * @return True if filterable chips were set
+     */
+    public boolean hasFilterableChips() {
+        return mHasFilterableChips;
+    }
+
+    ChipsInputLayout getAttachedLayout() {
+        return mAttached != null ? mAttached.get() : null;
+    }
+
+    /* Called by the attached layout when it changes its data source */
+    void setChipDataSource(ChipDataSource dataSource) {
+        mDataSource = dataSource;
+    }
+
+    /* Called by the attached layout when filterable chips are set on it */
+    void setHasFilterableChips() {
+        mHasFilterableChips = true;
+    }
+}
@@ -5,21 +5,33 @@ import android.content.res.ColorStateList;
 import android.content.res.Configuration;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.Parcel;
+import android.os.Parcelable;
 
 import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.RecyclerView;
 import android.text.Editable;
 import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.util.AttributeSet;
+import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.RelativeLayout;
 
 import com.beloo.widget.chipslayoutmanager.ChipsLayoutManager;
 
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Copyright © 2017 Tyler Suehr
@@ -57,6 +69,26 @@ public class ChipsInputLayout extends MaxHeightScrollView
     /* Used to validate selected chips */
     private ChipValidator mValidator;
 
+    /* Used to keep search indexes of filterable chips, if any */
+    private ChipSearchIndexCache mSearchIndexCache;
+
+    /* Restored selected chips that haven't been found yet, or null if none */
+    private List<Object> mPendingSelectedChips;
+
+    /* Number of filterable chip views to create once the filterable recycler is */
+    private int mPrewarmFilterableCount;
+    /* Pool of chip views shared with other layouts, if any */
+    private RecyclerView.RecycledViewPool mSharedPool;
+
+    /* Holder of the chips this is attached to, if any */
+    private ChipsInputHolder mHolder;
+    /* Observers added through this, so they can be moved off a held data source */
+    private final List<ChipDataSource.SelectionObserver> mSelectionObservers = new ArrayList<>();
+    private final List<ChipDataSource.ChangeObserver> mChangeObservers = new ArrayList<>();
+
+    /* True while this is attached to a window, and the adapters observe the data source */
+    private boolean mAttachedToWindow;
+
 
     public ChipsInputLayout(Context context) {
         this(context, null);
@@ -76,8 +108,19 @@ public class ChipsInputLayout extends MaxHeightScrollView
         mChipsRecycler = findViewById(R.id.chips_recycler);
         mChipsRecycler.addItemDecoration(new DefaultChipDecor(c));
         mChipsRecycler.setLayoutManager(ChipsLayoutManager.newBuilder(c).build());
-        mChipsRecycler.setNestedScrollingEnabled(false);
+        mChipsRecycler.setNestedScrollingEnabled(mOptions.mVirtualizeChips);
         mChipsRecycler.setAdapter(mChipsAdapter);
+        mChipsAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                scrollToChipsInput();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                scrollToChipsInput();
+            }
+        });
 
         // Set the max height from options
         setMaxHeight(Utils.dp(40) * mOptions.mMaxRows);
@@ -97,6 +140,98 @@ public class ChipsInputLayout extends MaxHeightScrollView
         }
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttachedToWindow = true;
+        mChipsAdapter.startObserving();
+        if (mFilteredAdapter != null) {
+            mFilteredAdapter.startObserving();
+        }
+    }
+
+    /**
+     * Stops the adapters from observing the data source, so a data source that
+     * outlives this (like one kept across configuration changes) doesn't keep
+     * notifying them, or keep them from being collected.
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        mAttachedToWindow = false;
+        mChipsAdapter.stopObserving();
+        if (mFilteredAdapter != null) {
+            mFilteredAdapter.stopObserving();
+        }
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Measures the chips recycler no taller than this can be, if chips are virtualized,
+     * so it only creates and lays out the chips that fit and scrolls through the rest
+     * itself. Otherwise, it's measured at its full height like any scroll view child.
+     */
+    @Override
+    protected void measureChildWithMargins(View child, int parentWidthMeasureSpec, int widthUsed,
+                                           int parentHeightMeasureSpec, int heightUsed) {
+        if (child != mChipsRecycler || !mOptions.mVirtualizeChips) {
+            super.measureChildWithMargins(child, parentWidthMeasureSpec, widthUsed,
+                    parentHeightMeasureSpec, heightUsed);
+            return;
+        }
+
+        final MarginLayoutParams lp = (MarginLayoutParams)child.getLayoutParams();
+        final int childWidthMeasureSpec = getChildMeasureSpec(parentWidthMeasureSpec,
+                getPaddingLeft() + getPaddingRight() + lp.leftMargin + lp.rightMargin
+                        + widthUsed, lp.width);
+        final int childHeightMeasureSpec = getChildMeasureSpec(parentHeightMeasureSpec,
+                getPaddingTop() + getPaddingBottom() + lp.topMargin + lp.bottomMargin
+                        + heightUsed, lp.height);
+        child.measure(childWidthMeasureSpec, childHeightMeasureSpec);
+    }
+
+    /**
+     * Saves the selected chips, so they can be selected again after a configuration
+     * change or process death. Chips with a number id are saved as their id, and
+     * found again in the filterable chips; custom chips are saved as their title.
+     *
+     * Chips with any other id (like a String id) aren't saved, since finding them again
+     * in a catalog would create every chip in it; select them again yourself.
+     *
+     * Note: like any view, this needs an id to have its state saved.
+     */
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        final List<Object> entries = new ArrayList<>();
+        for (Chip chip : mDataSource.getSelectedChips()) {
+            final Object id = chip.getId();
+            if (chip instanceof DefaultCustomChip) {
+                entries.add(chip.getTitle());
+            } else if (id instanceof Long || id instanceof Integer
+                    || id instanceof Short || id instanceof Byte) {
+                entries.add(((Number)id).longValue());
+            }
+        }
+        if (mPendingSelectedChips != null) {
+            // Still not found, but they may be found next time
+            entries.addAll(mPendingSelectedChips);
+        }
+        return SavedState.pack(super.onSaveInstanceState(), entries);
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        final SavedState savedState = (SavedState)state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+
+        // Chips that can't be found yet are selected once filterable chips are set
+        mPendingSelectedChips = savedState.unpack();
+        restorePendingSelectedChips();
+    }
+
 
     /**
      * Method for manually clearing the search box
@@ -113,16 +248,143 @@ public class ChipsInputLayout extends MaxHeightScrollView
      * Note: this should only be called if you want the user to be able to
      * filter pre-existing (filterable chip list) chips.
      *
+     * If a search index cache was set, the chips are used as the catalog of filterable
+     * chips instead (replacing any filterable chips already set), so they can be indexed.
+     *
      * @param chips List of {@link Chip}
      */
     public void setFilterableChipList(List<? extends Chip> chips) {
+        if (mSearchIndexCache != null) {
+            setFilterableChipCatalog(new ListChipCatalog(chips));
+            return;
+        }
         mDataSource.setFilterableChips(chips);
+        onFilterableChipsSet();
 
         // Setup the filterable recycler when new
         // filterable data has been set
         loadFilterableRecycler();
     }
 
+    /**
+     * Loads the given chips into the filterable chips in chunks, so that a very large
+     * number of chips doesn't freeze the UI, and updates the UI to enable the filterable
+     * RecyclerView accordingly.
+     *
+     * The chips are iterated on a background thread, and the user can filter the chips
+     * that have been loaded so far while the rest are still loading. What the user is
+     * filtering is only filtered again each time the number of loaded chips doubles,
+     * and once they're all loaded, so filtering doesn't slow down loading.
+     *
+     * @param chips Iterator of {@link Chip}
+     * @param listener {@link ChipStreamLoader.ProgressListener} to show loading progress
+     * @return {@link ChipStreamLoader} that can be used to cancel loading
+     */
+    public ChipStreamLoader streamFilterableChipList(Iterator<? extends Chip> chips,
+                                                     @Nullable final ChipStreamLoader.ProgressListener listener) {
+        // Setup the filterable recycler now, so the
+        // first chunk can be filtered as soon as it's loaded
+        loadFilterableRecycler();
+
+        final ChipStreamLoader loader = new ChipStreamLoader(mDataSource,
+                new ChipStreamLoader.ProgressListener() {
+            /* Number of chips loaded when the input was last filtered again */
+            private int filteredAt;
+
+            @Override
+            public void onChipsLoaded(int loaded) {
+                onFilterableChipsSet();
+
+                // Include the new chunks in what the user is filtering, but only once
+                // they double the chips, so filtering all of them stays linear overall
+                if (loaded >= filteredAt << 1) {
+                    filteredAt = loaded;
+                    filterInputAgain();
+                }
+                if (listener != null) {
+                    listener.onChipsLoaded(loaded);
+                }
+            }
+
+            @Override
+            public void onLoadComplete(int total) {
+                if (total > filteredAt) {
+                    filteredAt = total;
+                    filterInputAgain();
+                }
+                if (listener != null) {
+                    listener.onLoadComplete(total);
+                }
+            }
+        });
+        loader.load(chips, ChipStreamLoader.DEFAULT_CHUNK_SIZE, AsyncTask.THREAD_POOL_EXECUTOR);
+        return loader;
+    }
+
+    /**
+     * Uses the given catalog for the filterable chips, instead of a list of chips, and
+     * updates the UI to enable the filterable RecyclerView accordingly.
+     *
+     * This changes the chip data source to a {@link CatalogChipDataSource}, which
+     * only creates chips from the catalog when they are displayed or match a filter.
+     * The selected chips stay selected, but the catalog replaces any filterable chips.
+     *
+     * @param catalog {@link ChipCatalog}
+     */
+    public void setFilterableChipCatalog(ChipCatalog catalog) {
+        if (mDataSource instanceof CatalogChipDataSource) {
+            ((CatalogChipDataSource)mDataSource).setCatalog(catalog);
+        } else {
+            changeToCatalogDataSource(catalog);
+        }
+        if (mSearchIndexCache != null) {
+            mSearchIndexCache.attach((CatalogChipDataSource)mDataSource);
+        }
+        onFilterableChipsSet();
+
+        // Setup the filterable recycler when new
+        // filterable data has been set
+        loadFilterableRecycler();
+    }
+
+    /**
+     * Uses the given shared catalog for the filterable chips, and updates the UI to
+     * enable the filterable RecyclerView accordingly.
+     *
+     * Several layouts can use the same shared catalog (and its search index), while
+     * each keeps its own selected chips; see {@link SharedChipCatalog}.
+     *
+     * @param catalog {@link SharedChipCatalog}
+     */
+    public void setSharedChipCatalog(SharedChipCatalog catalog) {
+        if (!(mDataSource instanceof CatalogChipDataSource)) {
+            changeToCatalogDataSource(catalog.getCatalog());
+        }
+        catalog.addDataSource((CatalogChipDataSource)mDataSource);
+        onFilterableChipsSet();
+
+        // Setup the filterable recycler when new
+        // filterable data has been set
+        loadFilterableRecycler();
+    }
+
+    /**
+     * Sets the cache used to keep the search index of the filterable chips, so the
+     * index of chips that haven't changed is loaded from a file on the next launch
+     * rather than built again. Indexes are loaded and built in the background.
+     *
+     * This should be called before setting the filterable chips.
+     *
+     * @param cache {@link ChipSearchIndexCache}, or null to not index filterable chips
+     */
+    public void setSearchIndexCache(@Nullable ChipSearchIndexCache cache) {
+        mSearchIndexCache = cache;
+    }
+
+    public ChipSearchIndexCache getSearchIndexCache() {
+        return mSearchIndexCache;
+    }
+
     /**
      * Sets and stores a list of chips that are selected and updates the UI
      * to display them accordingly.
@@ -131,6 +393,7 @@ public class ChipsInputLayout extends MaxHeightScrollView
      */
     public void setSelectedChipList(List<? extends Chip> chips) {
         // Set the selected chips in the data source
+        mPendingSelectedChips = null;
         mDataSource.setSelectedChips(chips);
     }
 
@@ -197,9 +460,33 @@ public class ChipsInputLayout extends MaxHeightScrollView
      * because of the change observers.
      */
     public void clearSelectedChips() {
+        mPendingSelectedChips = null;
         mDataSource.clearSelectedChips();
     }
 
+    /**
+     * Undoes the last selection change, like a chip removed by backspace, if the
+     * data source keeps track of them (see {@link ObservableChipDataSource#undo()}
+     * and {@link #setUndoLimit(int)}).
+     *
+     * @return True if a change was undone
+     */
+    public boolean undo() {
+        return mDataSource instanceof ObservableChipDataSource
+                && ((ObservableChipDataSource)mDataSource).undo();
+    }
+
+    /**
+     * Redoes the last selection change that was undone, if the data source keeps
+     * track of them (see {@link ObservableChipDataSource#redo()}).
+     *
+     * @return True if a change was redone
+     */
+    public boolean redo() {
+        return mDataSource instanceof ObservableChipDataSource
+                && ((ObservableChipDataSource)mDataSource).redo();
+    }
+
     /**
      * Gets all the currently selected chips.
      *
@@ -419,6 +706,7 @@ public class ChipsInputLayout extends MaxHeightScrollView
      * @param observer {@link ChipDataSource.SelectionObserver}
      */
     public void addSelectionObserver(ChipDataSource.SelectionObserver observer) {
+        mSelectionObservers.add(observer);
         mDataSource.addSelectionObserver(observer);
     }
 
@@ -428,6 +716,7 @@ public class ChipsInputLayout extends MaxHeightScrollView
      * @param observer {@link ChipDataSource.SelectionObserver}
      */
     public void removeSelectionObserver(ChipDataSource.SelectionObserver observer) {
+        mSelectionObservers.remove(observer);
         mDataSource.removeSelectionObserver(observer);
     }
 
@@ -439,6 +728,7 @@ public class ChipsInputLayout extends MaxHeightScrollView
      * @param observer {@link ChipDataSource.ChangeObserver}
      */
     public void addChangeObserver(ChipDataSource.ChangeObserver observer) {
+        mChangeObservers.add(observer);
         mDataSource.addChangedObserver(observer);
     }
 
@@ -448,22 +738,134 @@ public class ChipsInputLayout extends MaxHeightScrollView
      * @param observer {@link ChipDataSource.ChangeObserver}
      */
     public void removeChangeObserver(ChipDataSource.ChangeObserver observer) {
+        mChangeObservers.remove(observer);
         mDataSource.removeChangedObserver(observer);
     }
 
+    /**
+     * Updates only the given parts of a chip (like its avatar, once it has been loaded),
+     * wherever it's displayed. If the data source can't notify about changes to parts
+     * of a chip, every chip is displayed again instead.
+     *
+     * @param chip {@link Chip} that changed
+     * @param changes Parts that changed, like {@link ChipDataSource#CHANGE_AVATAR}
+     */
+    public void notifyChipChanged(Chip chip, int changes) {
+        if (mDataSource instanceof ObservableChipDataSource) {
+            ((ObservableChipDataSource)mDataSource).notifyChipChanged(chip, changes);
+        } else {
+            mChipsAdapter.onChipDataSourceChanged();
+            if (mFilteredAdapter != null) {
+                mFilteredAdapter.onChipDataSourceChanged();
+            }
+        }
+    }
+
     /**
      * Changes the chip data source being used to manipulate chips, which will
      * update the UI accordingly.
      *
-     * Note: will retain existing observers from old data source, but all chips
-     * in the old data source will be cleared!
+     * Note: observers added through this layout are moved from the old data source to
+     * the new one, so the old one doesn't notify them anymore. Observers added to the
+     * old data source directly stay on it. Chips aren't copied from the old data source
+     * (which is left as it is), so the new one's chips are displayed instead!
      *
      * @param dataSource {@link ChipDataSource}
      */
     public void changeChipDataSource(ChipDataSource dataSource) {
-        mDataSource.cloneObservers(dataSource);
+        if (dataSource == null) {
+            throw new NullPointerException("Data source cannot be null!");
+        }
+        if (dataSource == mDataSource) { return; }
+
+        // The adapters move themselves to the new data source,
+        // so only move the observers added through this
+        for (ChipDataSource.SelectionObserver observer : mSelectionObservers) {
+            mDataSource.removeSelectionObserver(observer);
+            dataSource.addSelectionObserver(observer);
+        }
+        for (ChipDataSource.ChangeObserver observer : mChangeObservers) {
+            mDataSource.removeChangedObserver(observer);
+            dataSource.addChangedObserver(observer);
+        }
+
         mDataSource = dataSource;
-        mChipsAdapter.notifyDataSetChanged();
+        applyDataSourceOptions(dataSource);
+        mChipsAdapter.setDataSource(dataSource);
+        if (mFilteredAdapter != null) {
+            mFilteredAdapter.setDataSource(dataSource);
+        }
+        if (mHolder != null) {
+            mHolder.setChipDataSource(dataSource);
+        }
+    }
+
+    /**
+     * Applies the options of this layout that are kept by the data source to it.
+     * @param dataSource {@link ChipDataSource}
+     */
+    private void applyDataSourceOptions(ChipDataSource dataSource) {
+        if (dataSource instanceof ObservableChipDataSource) {
+            final ObservableChipDataSource observable = (ObservableChipDataSource)dataSource;
+            observable.setFrameCoalescingEnabled(mOptions.mFrameCoalescing);
+            observable.setUndoLimit(mOptions.mUndoLimit);
+        }
+    }
+
+    /**
+     * Changes to a new {@link CatalogChipDataSource} of the given catalog, with the chips
+     * that are selected now still selected.
+     *
+     * @param catalog {@link ChipCatalog}
+     */
+    private void changeToCatalogDataSource(ChipCatalog catalog) {
+        final CatalogChipDataSource dataSource = new CatalogChipDataSource(catalog);
+        dataSource.setSelectedChips(mDataSource.getSelectedChips());
+        changeChipDataSource(dataSource);
+    }
+
+    /**
+     * Starts using the chips of the given holder; called by {@link ChipsInputHolder}.
+     *
+     * @param holder {@link ChipsInputHolder}
+     */
+    void attachHolder(ChipsInputHolder holder) {
+        mHolder = holder;
+        changeChipDataSource(holder.getChipDataSource());
+        if (holder.hasFilterableChips()) {
+            loadFilterableRecycler();
+        }
+    }
+
+    /**
+     * Stops using the chips of the attached holder, leaving its data source as it is
+     * for the next layout; called by {@link ChipsInputHolder}.
+     */
+    void detachHolder() {
+        final ChipDataSource held = mDataSource;
+        mHolder = null;
+
+        // Only keep the observers that were added to the held data source without this
+        for (ChipDataSource.SelectionObserver observer : mSelectionObservers) {
+            held.removeSelectionObserver(observer);
+        }
+        for (ChipDataSource.ChangeObserver observer : mChangeObservers) {
+            held.removeChangedObserver(observer);
+        }
+
+        // The adapters move themselves off the held data source
+        mDataSource = new ListChipDataSource();
+        applyDataSourceOptions(mDataSource);
+        mChipsAdapter.setDataSource(mDataSource);
+        if (mFilteredAdapter != null) {
+            mFilteredAdapter.setDataSource(mDataSource);
+        }
+        for (ChipDataSource.SelectionObserver observer : mSelectionObservers) {
+            mDataSource.addSelectionObserver(observer);
+        }
+        for (ChipDataSource.ChangeObserver observer : mChangeObservers) {
+            mDataSource.addChangedObserver(observer);
+        }
     }
 
     /**
@@ -497,26 +899,32 @@ public class ChipsInputLayout extends MaxHeightScrollView
 
     public void setChipDeleteIconColor(ColorStateList deleteIconColor) {
         mOptions.mChipDeleteIconColor = deleteIconColor;
+        notifyStyleChanged();
     }
 
     public void setChipBackgroundColor(ColorStateList chipBackgroundColor) {
         mOptions.mChipBackgroundColor = chipBackgroundColor;
+        notifyStyleChanged();
     }
 
     public void setChipTitleTextColor(ColorStateList chipTitleTextColor) {
         mOptions.mChipTextColor = chipTitleTextColor;
+        notifyStyleChanged();
     }
 
     public void setChipDeleteIcon(Drawable chipDeleteIcon) {
         mOptions.mChipDeleteIcon = chipDeleteIcon;
+        notifyStyleChanged();
     }
 
     public void setChipDeleteIcon(@DrawableRes int res) {
         mOptions.mChipDeleteIcon = ContextCompat.getDrawable(getContext(), res);
+        notifyStyleChanged();
     }
 
     public void setShowChipAvatarEnabled(boolean hasAvatar) {
         mOptions.mShowAvatar = hasAvatar;
+        notifyStyleChanged();
     }
 
     public void setShowDetailedChipsEnabled(boolean enabled) {
@@ -525,6 +933,7 @@ public class ChipsInputLayout extends MaxHeightScrollView
 
     public void setChipsDeletable(boolean enabled) {
         mOptions.mShowDelete = enabled;
+        notifyStyleChanged();
     }
 
     public void setChipDetailsDeleteIconColor(ColorStateList detailedChipIconColor) {
@@ -541,10 +950,12 @@ public class ChipsInputLayout extends MaxHeightScrollView
 
     public void setFilterListBackgroundColor(ColorStateList backgroundColor) {
         mOptions.mFilterableListBackgroundColor = backgroundColor;
+        notifyStyleChanged();
     }
 
     public void setFilterListTextColor(ColorStateList textColor) {
         mOptions.mFilterableListTextColor = textColor;
+        notifyStyleChanged();
     }
 
     public void setFilterListElevation(float elevation) {
@@ -559,6 +970,177 @@ public class ChipsInputLayout extends MaxHeightScrollView
         mOptions.mHideKeyboardOnChipClick = hide;
     }
 
+    /**
+     * Sets whether changes to the selected chips and filter results are diffed by chip
+     * id in the background, and then dispatched as item updates on the main thread,
+     * instead of refreshing every chip. Whole new lists then animate and recycle views
+     * properly, without diffing on the main thread.
+     *
+     * @param enabled True if changes should be diffed
+     */
+    public void setAsyncDiffingEnabled(boolean enabled) {
+        mOptions.mAsyncDiffing = enabled;
+        mChipsAdapter.setAsyncDiffingEnabled(enabled);
+        if (mFilteredAdapter != null) {
+            mFilteredAdapter.setAsyncDiffingEnabled(enabled);
+        }
+    }
+
+    /**
+     * Sets whether the data source's notifications are coalesced until the next frame
+     * (see {@link ObservableChipDataSource#setFrameCoalescingEnabled(boolean)}), so a
+     * burst of changes (like chips streamed in, or many chips selected) only lays out
+     * the chips once per frame. This applies to data sources changed to later too.
+     *
+     * @param enabled True if notifications should be coalesced
+     */
+    public void setFrameCoalescingEnabled(boolean enabled) {
+        mOptions.mFrameCoalescing = enabled;
+        applyDataSourceOptions(mDataSource);
+    }
+
+    /**
+     * Sets the maximum number of selection changes the data source keeps to undo
+     * (see {@link ObservableChipDataSource#setUndoLimit(int)}); none are kept by
+     * default. This applies to data sources changed to later too.
+     *
+     * @param limit Maximum number of changes, or 0 to not record them
+     */
+    public void setUndoLimit(int limit) {
+        mOptions.mUndoLimit = limit;
+        applyDataSourceOptions(mDataSource);
+    }
+
+    /**
+     * Sets whether the titles and subtitles of filtered chips are measured in the
+     * background while filtering, instead of on the main thread when they're displayed.
+     * This makes scrolling filtered chips smoother when their text is slow to measure,
+     * like long names in complex scripts. It has no effect before Lollipop.
+     *
+     * @param enabled True if text should be measured in the background
+     */
+    public void setFilterTextPrecomputingEnabled(boolean enabled) {
+        mOptions.mPrecomputeFilterText = enabled;
+        if (mFilteredAdapter != null) {
+            mFilteredAdapter.setTextPrecomputingEnabled(enabled);
+        }
+    }
+
+    /**
+     * Sets whether the chips are virtualized: instead of this scrolling through all the
+     * chips laid out at once, the chips recycler is kept within the max rows and scrolls
+     * itself, so only the chips that are visible are created and recycled. This should
+     * be enabled if many chips (like hundreds of recipients) can be selected.
+     *
+     * @param enabled True if the chips should be virtualized
+     */
+    public void setVirtualizedChipsEnabled(boolean enabled) {
+        if (mOptions.mVirtualizeChips == enabled) { return; }
+        mOptions.mVirtualizeChips = enabled;
+        mChipsRecycler.setNestedScrollingEnabled(enabled);
+        scrollTo(0, 0);
+        mChipsRecycler.requestLayout();
+        scrollToChipsInput();
+    }
+
+    /**
+     * Sets how many chips are displayed when collapsed. If more chips are selected, only
+     * that many are displayed, followed by a summary chip ("+N") of the rest, which
+     * expands all the chips when clicked. Laying out the chips then costs the same no
+     * matter how many are selected. This collapses the chips, if they were expanded.
+     *
+     * @param count Number of chips displayed when collapsed, or 0 to never collapse
+     */
+    public void setCollapsedChipCount(int count) {
+        mOptions.mCollapsedChipCount = count;
+        mChipsAdapter.setExpanded(false);
+    }
+
+    /**
+     * Displays all the selected chips, if they were collapsed.
+     */
+    public void expandChips() {
+        mChipsAdapter.setExpanded(true);
+    }
+
+    /**
+     * Displays only the first selected chips and a summary of the rest again, if there
+     * are more than the collapsed chip count.
+     */
+    public void collapseChips() {
+        mChipsAdapter.setExpanded(false);
+    }
+
+    /**
+     * Sets whether selected chips are displayed by {@link FlatChipView}, which draws the
+     * whole chip as a single view, instead of {@link ChipView}, which inflates a layout.
+     * Flat chips are much cheaper to create and measure when many chips are selected.
+     *
+     * @param enabled True if chips should be flat
+     */
+    public void setFlatChipsEnabled(boolean enabled) {
+        if (mOptions.mFlatChips == enabled) { return; }
+        mOptions.mFlatChips = enabled;
+        mChipsAdapter.notifyDataSetChanged();
+    }
+
+    /**
+     * Creates views for selected and filterable chips ahead of time, while the main
+     * thread is idle, so they don't have to be created when chips are first displayed
+     * (like when the user types the first character and filterable chips are shown).
+     *
+     * Views for filterable chips are created once filterable chips are set, if they
+     * haven't been yet.
+     *
+     * @param selectedCount Number of selected chip views to create
+     * @param filterableCount Number of filterable chip views to create
+     */
+    public void prewarmChipViews(int selectedCount, int filterableCount) {
+        ChipViewPrewarmer.prewarm(mChipsRecycler,
+                mChipsAdapter.getChipViewType(), selectedCount, mSharedPool != null);
+        if (mFilteredRecycler != null) {
+            ChipViewPrewarmer.prewarm(mFilteredRecycler,
+                    FilterableChipsAdapter.CHIP, filterableCount, mSharedPool != null);
+        } else {
+            mPrewarmFilterableCount = filterableCount;
+        }
+    }
+
+    /**
+     * Creates a pool of chip views that can be shared by several layouts, using
+     * {@link #setRecycledViewPool(RecyclerView.RecycledViewPool)}, sized to keep
+     * enough selected and filterable chip views for a few layouts.
+     *
+     * Note: views keep the context they were created with, so a pool should only be
+     * shared within one activity (like by its fragments), and not kept beyond it.
+     *
+     * @return {@link RecyclerView.RecycledViewPool}
+     */
+    public static RecyclerView.RecycledViewPool createRecycledViewPool() {
+        final RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        ChipsAdapter.setMaxRecycledViews(pool);
+        FilterableChipsAdapter.setMaxRecycledViews(pool);
+        return pool;
+    }
+
+    /**
+     * Shares the given pool of chip views with other layouts using it, so views of
+     * chips one layout no longer displays can be reused by another, instead of every
+     * layout creating its own.
+     *
+     * @param pool Pool created by {@link #createRecycledViewPool()}
+     */
+    public void setRecycledViewPool(RecyclerView.RecycledViewPool pool) {
+        if (pool == null) {
+            throw new NullPointerException("Pool cannot be null!");
+        }
+        mSharedPool = pool;
+        mChipsRecycler.setRecycledViewPool(pool);
+        if (mFilteredRecycler != null) {
+            mFilteredRecycler.setRecycledViewPool(pool);
+        }
+    }
+
     public void setMaxRows(int rows) {
         mOptions.mMaxRows = rows;
         setMaxHeight(Utils.dp(40) * mOptions.mMaxRows);
@@ -570,6 +1152,7 @@ public class ChipsInputLayout extends MaxHeightScrollView
         if (mChipsInput != null) {
             mChipsInput.setTypeface(typeface);
         }
+        notifyStyleChanged();
     }
 
     /**
@@ -604,14 +1187,39 @@ public class ChipsInputLayout extends MaxHeightScrollView
         return mChipsInput;
     }
 
+    /* Keeps the chips input visible as chips are added, if chips are virtualized */
+    private void scrollToChipsInput() {
+        if (mOptions.mVirtualizeChips) {
+            // The input is always the last item
+            mChipsRecycler.scrollToPosition(mChipsAdapter.getItemCount() - 1);
+        }
+    }
+
+    /* Compiles the style again and displays it on every chip, after the options changed */
+    private void notifyStyleChanged() {
+        mOptions.invalidateStyle();
+        mChipsAdapter.notifyStyleChanged();
+        if (mFilteredAdapter != null) {
+            mFilteredAdapter.notifyStyleChanged();
+        }
+    }
+
     private void loadFilterableRecycler() {
         if (mFilteredRecycler == null) {
             // Create and set the filterable chips adapter
             mFilteredAdapter = new FilterableChipsAdapter(mDataSource, mOptions, this);
+            mFilteredAdapter.setAsyncDiffingEnabled(mOptions.mAsyncDiffing);
+            mFilteredAdapter.setTextPrecomputingEnabled(mOptions.mPrecomputeFilterText);
+            if (mAttachedToWindow) {
+                mFilteredAdapter.startObserving();
+            }
 
             // Create a new filterable recycler view
             mFilteredRecycler = new FilterableRecyclerView(getContext());
             mFilteredRecycler.setChipOptions(mOptions);
+            if (mSharedPool != null) {
+                mFilteredRecycler.setRecycledViewPool(mSharedPool);
+            }
             mFilteredRecycler.setup(mFilteredAdapter, this);
 
             // To show our filterable recycler view, we need to make sure
@@ -629,9 +1237,110 @@ public class ChipsInputLayout extends MaxHeightScrollView
                 lp.bottomMargin = Utils.getNavBarHeight(getContext());
             }
             rootView.addView(mFilteredRecycler, lp);
+
+            // Create the filterable chip views asked for before there was a recycler
+            ChipViewPrewarmer.prewarm(mFilteredRecycler,
+                    FilterableChipsAdapter.CHIP, mPrewarmFilterableCount, mSharedPool != null);
+            mPrewarmFilterableCount = 0;
         }
     }
 
+    private void onFilterableChipsSet() {
+        if (mHolder != null) {
+            mHolder.setHasFilterableChips();
+        }
+        restorePendingSelectedChips();
+    }
+
+    /* Filters the filterable chips by the user's input again, if there is any */
+    private void filterInputAgain() {
+        if (mFilteredRecycler != null && mChipsInput.length() > 0) {
+            mFilteredRecycler.filterChips(mChipsInput.getText().toString());
+        }
+    }
+
+    /**
+     * Selects the restored chips that can be found in the filterable chips, all as
+     * one change, and keeps the rest pending.
+     */
+    private void restorePendingSelectedChips() {
+        if (mPendingSelectedChips == null) { return; }
+
+        // Ids are found through catalogs, so their chips don't all need to be created
+        final ChipCatalog catalog = mDataSource instanceof CatalogChipDataSource
+                ? ((CatalogChipDataSource)mDataSource).getCatalog()
+                : null;
+        Map<Long, Chip> filterableChips = null;
+
+        // Custom chips may still be selected (like in a held data source), and
+        // they'd be duplicated if restored, since each one has a new id
+        final List<String> selectedCustomTitles = new ArrayList<>();
+        for (Chip chip : mDataSource.getSelectedChips()) {
+            if (chip instanceof DefaultCustomChip) {
+                selectedCustomTitles.add(chip.getTitle());
+            }
+        }
+
+        final List<Chip> restored = new ArrayList<>();
+        final List<Object> pending = new ArrayList<>();
+        for (Object entry : mPendingSelectedChips) {
+            if (entry instanceof String) {
+                if (!selectedCustomTitles.remove(entry)) {
+                    restored.add(new DefaultCustomChip((String)entry));
+                }
+                continue;
+            }
+
+            final long id = (Long)entry;
+            Chip chip = null;
+            if (catalog != null) {
+                final int row = indexOfId(catalog, id);
+                chip = row > -1 ? catalog.getChip(row) : null;
+            } else {
+                if (filterableChips == null) {
+                    filterableChips = new HashMap<>();
+                    for (Chip filterable : mDataSource.getOriginalChips()) {
+                        final Object filterableId = filterable.getId();
+                        if (filterableId instanceof Number) {
+                            filterableChips.put(((Number)filterableId).longValue(), filterable);
+                        }
+                    }
+                }
+                chip = filterableChips.get(id);
+            }
+            if (chip != null) {
+                restored.add(chip);
+            } else {
+                pending.add(entry);
+            }
+        }
+
+        mPendingSelectedChips = pending.isEmpty() ? null : pending;
+        if (!restored.isEmpty()) {
+            Utils.takeChips(mDataSource, restored);
+        }
+    }
+
+    /**
+     * Finds the row of the given id in the given catalog, without creating its chips.
+     *
+     * @param catalog {@link ChipCatalog}
+     * @param id Id of the chip
+     * @return Row of the chip, or -1 if not in the catalog
+     */
+    private static int indexOfId(ChipCatalog catalog, long id) {
+        if (catalog instanceof ChipCatalog.IdIndex) {
+            return ((ChipCatalog.IdIndex)catalog).indexOfId(id);
+        }
+
+        // Other catalogs find chips with the same id as the one they're given
+        int row = catalog.indexOf(new IdChip(id));
+        if (row == -1 && id == (int)id) {
+            row = catalog.indexOf(new IdChip((int)id));
+        }
+        return row;
+    }
+
     private void hideKeyboard() {
         ((InputMethodManager)getContext().getSystemService(Context.INPUT_METHOD_SERVICE))
                 .hideSoftInputFromWindow(mChipsInput.getWindowToken(), 0);
@@ -646,6 +1355,179 @@ public class ChipsInputLayout extends MaxHeightScrollView
     }
 
 
+    /**
+     * Subclass of {@link Chip} that only has an id, used to find the row of a restored
+     * id in a catalog that can't find ids itself.
+     */
+    private static final class IdChip extends Chip {
+        private final Object mId;
+
+
+        IdChip(Object id) {
+            mId = id;
+        }
+
+        @Nullable
+        @Override
+        public Object getId() {
+            return mId;
+        }
+
+        @NonNull
+        @Override
+        public String getTitle() {
+            return "";
+        }
+
+        @Nullable
+        @Override
+        public String getSubtitle() {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public Uri getAvatarUri() {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public Drawable getAvatarDrawable() {
+            return null;
+        }
+    }
+
+
+    /**
+     * Subclass of {@link BaseSavedState} that keeps the selected chips compactly, so
+     * thousands of them don't make the saved state too large for a Binder transaction.
+     *
+     * Each selected chip is either a number id, saved as a zigzag varint, or a custom
+     * chip, saved as its title; a bit for each chip says which of the two it is.
+     */
+    static final class SavedState extends BaseSavedState {
+        private int mCount;
+        private byte[] mIds;
+        private byte[] mCustomFlags;
+        private String[] mCustomTitles;
+
+
+        private SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            mCount = in.readInt();
+            mIds = in.createByteArray();
+            mCustomFlags = in.createByteArray();
+            mCustomTitles = in.createStringArray();
+        }
+
+        /**
+         * Packs the given selected chips.
+         *
+         * @param superState State of the super class
+         * @param entries Number ids (as {@link Long}) and custom titles (as {@link String})
+         * @return {@link SavedState}
+         */
+        static SavedState pack(Parcelable superState, List<Object> entries) {
+            final SavedState state = new SavedState(superState);
+            final ByteArrayOutputStream ids = new ByteArrayOutputStream();
+            final List<String> customTitles = new ArrayList<>();
+            state.mCount = entries.size();
+            state.mCustomFlags = new byte[(entries.size() + 7) >>> 3];
+            for (int i = 0; i < entries.size(); i++) {
+                final Object entry = entries.get(i);
+                if (entry instanceof String) {
+                    state.mCustomFlags[i >>> 3] |= 1 << (i & 7);
+                    customTitles.add((String)entry);
+                } else {
+                    writeId(ids, (Long)entry);
+                }
+            }
+            state.mIds = ids.toByteArray();
+            state.mCustomTitles = customTitles.toArray(new String[customTitles.size()]);
+            return state;
+        }
+
+        /**
+         * Unpacks the selected chips, in the order they were packed.
+         * @return Number ids (as {@link Long}) and custom titles (as {@link String})
+         */
+        List<Object> unpack() {
+            final List<Object> entries = new ArrayList<>(mCount);
+            final int[] position = new int[1];
+            int title = 0;
+            for (int i = 0; i < mCount; i++) {
+                if ((mCustomFlags[i >>> 3] & (1 << (i & 7))) != 0) {
+                    entries.add(mCustomTitles[title++]);
+                } else {
+                    entries.add(readId(mIds, position));
+                }
+            }
+            return entries;
+        }
+
+        /**
+         * Writes the given id as a zigzag varint, so small ids of either sign only
+         * take a byte or two.
+         *
+         * @param out Stream to write to
+         * @param id Id to write
+         */
+        static void writeId(ByteArrayOutputStream out, long id) {
+            long zigzag = (id << 1) ^ (id >> 63);
+            while ((zigzag & ~0x7fL) != 0) {
+                out.write((int)((zigzag & 0x7f) | 0x80));
+                zigzag >>>= 7;
+            }
+            out.write((int)zigzag);
+        }
+
+        /**
+         * Reads an id written by {@link #writeId(ByteArrayOutputStream, long)}.
+         *
+         * @param in Bytes to read from
+         * @param position Position to read at, which is moved past the id
+         * @return Id that was read
+         */
+        static long readId(byte[] in, int[] position) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in[position[0]++];
+                zigzag |= (long)(b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeInt(mCount);
+            out.writeByteArray(mIds);
+            out.writeByteArray(mCustomFlags);
+            out.writeStringArray(mCustomTitles);
+        }
+
+        public static final Creator<SavedState> CREATOR = new Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
+    }
+
+
     /**
      * Implementation of {@link TextWatcher} that handles two things for us:
      * (1) Hides the filterable recycler if the user removes all the text from input.
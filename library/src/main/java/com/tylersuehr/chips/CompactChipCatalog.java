@@ -0,0 +1,239 @@
+package com.tylersuehr.chips;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Implementation of {@link ChipCatalog} that packs its rows into a few flat arrays,
+ * rather than keeping a chip object for each row, for catalogs with a very large
+ * number of chips (like a tag vocabulary).
+ *
+ * Each row is stored as:
+ * (1) Its id, in a long array.
+ * (2) Its title and subtitle, in one char array shared by all rows, with the start
+ *     of each title and subtitle in an int array.
+ * (3) Whether it has a subtitle, as a bit in an int array.
+ *
+ * That's 16 bytes for each row plus its text, and 4 more bytes once a chip has to be
+ * found by its id. Chips are only created when a row is displayed or matches a filter,
+ * as lightweight chips that read from these arrays.
+ *
+ * Use {@link Builder} to create one.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public final class CompactChipCatalog implements ChipCatalog, ChipCatalog.IdIndex {
+    private final int mCount;
+    /* Id of each row */
+    private final long[] mIds;
+    /* Text of all rows */
+    private final char[] mText;
+    /* Start of each row's title (2 * row) and subtitle (2 * row + 1) in mText */
+    private final int[] mStarts;
+    /* Bit for each row that has a subtitle */
+    private final int[] mSubtitleFlags;
+    /* Rows sorted by their id, created when first needed */
+    private volatile int[] mRowsById;
+
+    /* Reusable views of the text, used when matching rows */
+    private final ThreadLocal<TextWindow> mWindows = new ThreadLocal<TextWindow>() {
+        @Override
+        protected TextWindow initialValue() {
+            return new TextWindow();
+        }
+    };
+
+
+    private CompactChipCatalog(int count, long[] ids, char[] text, int[] starts, int[] subtitleFlags) {
+        mCount = count;
+        mIds = ids;
+        mText = text;
+        mStarts = starts;
+        mSubtitleFlags = subtitleFlags;
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @NonNull
+    @Override
+    public Chip getChip(int row) {
+        checkRow(row);
+        return new CatalogChip(this, row, mIds[row]);
+    }
+
+    @Override
+    public int indexOf(@NonNull Chip chip) {
+        final int row = CatalogChip.rowIn(chip, this);
+        if (row != -1) {
+            return row;
+        }
+        final Object id = chip.getId();
+        return id instanceof Long ? indexOfId((Long)id) : -1;
+    }
+
+    @Override
+    public int indexOfId(long id) {
+        int[] rowsById = mRowsById;
+        if (rowsById == null) {
+            // Only happens the first time a chip is found by its id
+            rowsById = mRowsById = ChipRowBuffer.sortedOrder(mIds, mCount);
+        }
+
+        int low = 0;
+        int high = mCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long midId = mIds[rowsById[mid]];
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return rowsById[mid];
+            }
+        }
+        return -1;
+    }
+
+    public long getId(int row) {
+        checkRow(row);
+        return mIds[row];
+    }
+
+    @NonNull
+    @Override
+    public CharSequence getTitle(int row) {
+        checkRow(row);
+        return new String(mText, mStarts[row << 1], titleLength(row));
+    }
+
+    @Nullable
+    @Override
+    public CharSequence getSubtitle(int row) {
+        checkRow(row);
+        return hasSubtitle(row)
+                ? new String(mText, mStarts[(row << 1) + 1], subtitleLength(row))
+                : null;
+    }
+
+    @Override
+    public boolean matches(int row, String pattern) {
+        checkRow(row);
+        final TextWindow window = mWindows.get();
+        window.set(mStarts[row << 1], titleLength(row));
+        if (Utils.containsIgnoreCase(window, pattern, false)) {
+            return true;
+        }
+        if (hasSubtitle(row)) {
+            window.set(mStarts[(row << 1) + 1], subtitleLength(row));
+            return Utils.containsIgnoreCase(window, pattern, true);
+        }
+        return false;
+    }
+
+    private boolean hasSubtitle(int row) {
+        return (mSubtitleFlags[row >>> 5] & (1 << (row & 31))) != 0;
+    }
+
+    private int titleLength(int row) {
+        return mStarts[(row << 1) + 1] - mStarts[row << 1];
+    }
+
+    private int subtitleLength(int row) {
+        return mStarts[(row << 1) + 2] - mStarts[(row << 1) + 1];
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= mCount) {
+            throw new IndexOutOfBoundsException("Row " + row + ", count " + mCount);
+        }
+    }
+
+
+    /**
+     * Implementation of {@link CharSequence} that's a view of a range of the text,
+     * so rows can be matched without creating strings.
+     */
+    private final class TextWindow implements CharSequence {
+        private int mStart;
+        private int mLength;
+
+        void set(int start, int length) {
+            mStart = start;
+            mLength = length;
+        }
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return mText[mStart + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(mText, mStart + start, end - start);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return new String(mText, mStart, mLength);
+        }
+    }
+
+
+    /**
+     * Builds a {@link CompactChipCatalog} by adding rows to growing arrays.
+     */
+    public static final class Builder {
+        private final ChipRowBuffer mRows;
+
+
+        public Builder() {
+            this(16);
+        }
+
+        /**
+         * @param expectedCount Number of rows expected to be added
+         */
+        public Builder(int expectedCount) {
+            mRows = new ChipRowBuffer(expectedCount);
+        }
+
+        /**
+         * Adds a row to the catalog.
+         *
+         * @param id Id of the chip
+         * @param title Title of the chip
+         * @param subtitle Subtitle of the chip, if any
+         * @return This {@link Builder}
+         */
+        public Builder add(long id, @NonNull CharSequence title, @Nullable CharSequence subtitle) {
+            mRows.add(id, title, subtitle);
+            return this;
+        }
+
+        /**
+         * Creates the catalog, trimming the arrays to the rows that were added.
+         * @return {@link CompactChipCatalog}
+         */
+        public CompactChipCatalog build() {
+            final int count = mRows.getCount();
+            return new CompactChipCatalog(count,
+                    Arrays.copyOf(mRows.getIds(), count),
+                    Arrays.copyOf(mRows.getText(), mRows.getTextLength()),
+                    Arrays.copyOf(mRows.getStarts(), (count << 1) + 1),
+                    Arrays.copyOf(mRows.getSubtitleFlags(), ChipRowBuffer.flagsLength(count)));
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package com.tylersuehr.chips;
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Subclass of {@link ObservableChipDataSource} that can safely be changed from
+ * any thread, such as a database or sync thread loading chips in the background.
+ *
+ * Changes are made to the latest chips under a lock, and then published on the
+ * callback executor, as an immutable snapshot, right before notifying observers on
+ * it. By default, the callback executor is the main thread, so observers (like the
+ * adapters) get notified on the main thread.
+ *
+ * A snapshot is only copied from the latest chips when a change is published, and
+ * includes every change made until then; so a burst of changes made in the background
+ * (like a loop adding filtered chips) is copied about once, not once per change. Only
+ * the chips that changed are copied, once each; the rest are shared with the previous
+ * snapshot, and sets to look chips up in are only built when they're first needed.
+ *
+ * The lists and chips returned by this data source always come from the published
+ * snapshot, so components only ever see a complete state. Changes published early,
+ * along with an earlier one, are still notified in order afterwards.
+ *
+ * This can coalesce notifications until the next frame; snapshots are then published
+ * along with the coalesced notification, rather than with each change.
+ *
+ * Unlike {@link ListChipDataSource}, which sorts the selected chips by title, chips
+ * are kept in the order they were added (selected chips in the order they were
+ * selected).
+ *
+ * Note: a custom callback executor must run its tasks one at a time, in order.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ConcurrentChipDataSource extends ObservableChipDataSource
+        implements BulkChipDataSource {
+    /* Guards changes to the latest chips */
+    private final Object mLock = new Object();
+    /* Runs the publishing of snapshots and notifies observers */
+    private final Executor mCallbackExecutor;
+    /* Number of snapshots waiting to be published */
+    private final AtomicInteger mPendingPublications = new AtomicInteger();
+
+    /* Latest chips, including changes not published yet */
+    private final Set<Chip> mOriginal = new LinkedHashSet<>();
+    private final Set<Chip> mFiltered = new LinkedHashSet<>();
+    private final Set<Chip> mSelected = new LinkedHashSet<>();
+    /* Version of the latest chips, counting every change */
+    private long mLatestVersion;
+    /* Which of the latest chips changed since the last snapshot (see Snapshot.ALL) */
+    private int mLatestChanged;
+    /* Snapshot of the chips, as of the last change published */
+    private volatile Snapshot mPublished;
+
+
+    /* Construct with observers notified on the main thread */
+    public ConcurrentChipDataSource() {
+        this(new MainThreadExecutor());
+    }
+
+    public ConcurrentChipDataSource(@NonNull Executor callbackExecutor) {
+        if (callbackExecutor == null) {
+            throw new NullPointerException("Callback executor cannot be null!");
+        }
+        mCallbackExecutor = callbackExecutor;
+        mPublished = new Snapshot();
+    }
+
+    @Override
+    public List<Chip> getSelectedChips() {
+        return mPublished.selectedList;
+    }
+
+    @Override
+    public List<Chip> getFilteredChips() {
+        return mPublished.filteredList;
+    }
+
+    @Override
+    public List<Chip> getOriginalChips() {
+        return mPublished.originalList;
+    }
+
+    @Override
+    public Chip getFilteredChip(int position) {
+        return mPublished.filteredList.get(position);
+    }
+
+    @Override
+    public Chip getSelectedChip(int position) {
+        return mPublished.selectedList.get(position);
+    }
+
+    @Override
+    public void setFilterableChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        final Publication publication;
+        synchronized (mLock) {
+            for (Chip chip : chips) {
+                chip.setFilterable(true);
+                mOriginal.add(chip);
+                mFiltered.add(chip);
+            }
+            publication = commit(Snapshot.ORIGINAL | Snapshot.FILTERED, Publication.NONE, null);
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public void addFilteredChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        final Publication publication;
+        synchronized (mLock) {
+            chip.setFilterable(true);
+            mOriginal.add(chip);
+            mFiltered.add(chip);
+            publication = commit(Snapshot.ORIGINAL | Snapshot.FILTERED, Publication.NONE, null);
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public void addSelectedChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        final Publication publication;
+        synchronized (mLock) {
+            mSelected.add(chip);
+            publication = commit(Snapshot.SELECTED, Publication.SELECTED, Collections.singletonList(chip));
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public void removeSelectedChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        final Publication publication;
+        synchronized (mLock) {
+            publication = mSelected.remove(chip)
+                    ? commit(Snapshot.SELECTED, Publication.UNSELECTED, Collections.singletonList(chip))
+                    : commit(0, Publication.NONE, null);
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public void setSelectedChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        final Publication publication;
+        synchronized (mLock) {
+            mOriginal.clear();
+            mSelected.clear();
+            mOriginal.addAll(chips);
+            mSelected.addAll(chips);
+            publication = commit(Snapshot.ORIGINAL | Snapshot.SELECTED, Publication.NONE, null);
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public void takeChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        if (!chip.isFilterable()) {
+            throw new IllegalArgumentException("Cannot take a non-filterable chip!");
+        }
+        final Publication publication;
+        synchronized (mLock) {
+            if (!mFiltered.contains(chip)) {
+                throw new IllegalArgumentException("Chip is not in filtered chip list!");
+            }
+            mOriginal.remove(chip);
+            mFiltered.remove(chip);
+            mSelected.add(chip);
+            publication = commit(Snapshot.ALL, Publication.SELECTED, Collections.singletonList(chip));
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public void takeChip(int position) {
+        // Positions are what observers were shown, so use the published snapshot
+        final Chip foundChip = mPublished.filteredList.get(position);
+        if (foundChip == null) {
+            throw new NullPointerException("Chip cannot be null; " +
+                    "not found in filtered chip list!");
+        }
+        final Publication publication;
+        synchronized (mLock) {
+            // It may have been taken already, since the snapshot was published
+            if (!mSelected.add(foundChip)) { return; }
+            if (foundChip.isFilterable()) {
+                mOriginal.remove(foundChip);
+                mFiltered.remove(foundChip);
+            }
+            publication = commit(Snapshot.ALL, Publication.SELECTED, Collections.singletonList(foundChip));
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public void takeChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        final Publication publication;
+        synchronized (mLock) {
+            final List<Chip> taken = new ArrayList<>(chips.size());
+            for (Chip chip : chips) {
+                if (mSelected.add(chip)) {
+                    mOriginal.remove(chip);
+                    mFiltered.remove(chip);
+                    taken.add(chip);
+                }
+            }
+            publication = commit(Snapshot.ALL, Publication.SELECTED, taken);
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public void replaceChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        final Publication publication;
+        synchronized (mLock) {
+            if (!mSelected.contains(chip)) {
+                throw new IllegalArgumentException("Chip is not in selected chip list!");
+            }
+            unselect(chip);
+            publication = commit(Snapshot.ALL, Publication.UNSELECTED, Collections.singletonList(chip));
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public void replaceChip(int position) {
+        final Publication publication;
+        synchronized (mLock) {
+            // Use the latest chips, which may be ahead of the published snapshot (like
+            // after two backspaces within one coalesced frame); if the chip at the
+            // position was already unselected, there's nothing left to do
+            final Chip foundChip = chipAt(mSelected, position);
+            if (foundChip == null || !unselect(foundChip)) { return; }
+            publication = commit(Snapshot.ALL, Publication.UNSELECTED, Collections.singletonList(foundChip));
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public void clearFilteredChips() {
+        final Publication publication;
+        synchronized (mLock) {
+            mOriginal.clear();
+            mFiltered.clear();
+            publication = commit(Snapshot.ORIGINAL | Snapshot.FILTERED, Publication.NONE, null);
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public void clearSelectedChips() {
+        final Publication publication;
+        synchronized (mLock) {
+            // Keep the cleared chips so we can tell observers they were unselected
+            final List<Chip> cleared = new ArrayList<>(mSelected);
+            mSelected.clear();
+            publication = commit(Snapshot.SELECTED, Publication.UNSELECTED, cleared);
+        }
+        publishNow(publication);
+    }
+
+    @Override
+    public boolean existsInFiltered(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        return mPublished.filtered().contains(chip);
+    }
+
+    @Override
+    public boolean existsInSelected(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        return mPublished.selected().contains(chip);
+    }
+
+    @Override
+    public boolean existsInDataSource(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        final Snapshot published = mPublished;
+        return (published.original().contains(chip)
+                || published.filtered().contains(chip)
+                || published.selected().contains(chip));
+    }
+
+    /**
+     * Publishes a snapshot of the latest chips, if they changed since the last one.
+     * Called on the callback executor.
+     */
+    @Override
+    protected void publishChanges() {
+        synchronized (mLock) {
+            if (mLatestVersion > mPublished.version) {
+                mPublished = mPublished.next(mOriginal, mFiltered, mSelected,
+                        mLatestChanged, mLatestVersion);
+                mLatestChanged = 0;
+            }
+        }
+    }
+
+    /* Must be called while holding mLock; returns false if the chip wasn't selected */
+    private boolean unselect(Chip chip) {
+        if (!mSelected.remove(chip)) {
+            return false;
+        }
+        if (chip.isFilterable()) {
+            mFiltered.add(chip);
+            mOriginal.add(chip);
+        }
+        return true;
+    }
+
+    /* Gets the chip at the given position of the given chips, or null if there's none */
+    private static Chip chipAt(Set<Chip> chips, int position) {
+        if (position < 0 || position >= chips.size()) {
+            return null;
+        }
+        int i = 0;
+        for (Chip chip : chips) {
+            if (i++ == position) {
+                return chip;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counts a change made to the latest chips, and schedules it to be published on
+     * the callback executor. Must be called while holding mLock.
+     *
+     * When already on the main thread, and nothing else is waiting to be published,
+     * the publication is returned instead so that the caller can publish it right
+     * away (after releasing mLock) and see its own change.
+     *
+     * @param changed Chips that changed (like {@link Snapshot#SELECTED})
+     * @param event Selection event to notify after publishing
+     * @param chips Chips the selection event is about
+     * @return {@link Publication} to publish now, or null if scheduled
+     */
+    private Publication commit(int changed, int event, List<Chip> chips) {
+        mLatestChanged |= changed;
+        final Publication publication = new Publication(++mLatestVersion, event, chips);
+        if (mCallbackExecutor instanceof MainThreadExecutor
+                && Looper.myLooper() == Looper.getMainLooper()
+                && mPendingPublications.get() == 0) {
+            return publication;
+        } else {
+            mPendingPublications.incrementAndGet();
+            mCallbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mPendingPublications.decrementAndGet();
+                    publication.run();
+                }
+            });
+            return null;
+        }
+    }
+
+    private void publishNow(Publication publication) {
+        if (publication != null) {
+            publication.run();
+        }
+    }
+
+
+    /**
+     * Nested inner-class that publishes a snapshot and notifies observers about it.
+     */
+    private final class Publication implements Runnable {
+        static final int NONE = 0;
+        static final int SELECTED = 1;
+        static final int UNSELECTED = 2;
+
+        private final long mVersion;
+        private final List<Chip> mChips;
+        private final int mEvent;
+
+        Publication(long version, int event, List<Chip> chips) {
+            mVersion = version;
+            mEvent = event;
+            mChips = chips;
+        }
+
+        @Override
+        public void run() {
+            // The change may have been published already, along with an earlier one;
+            // then only its selection events are left to notify
+            if (mVersion > mPublished.version) {
+                // Coalesced changes are published along with their notification
+                if (!isFrameCoalescingEnabled()) {
+                    publishChanges();
+                }
+            } else if (mEvent == NONE) {
+                return;
+            }
+
+            notifyDataSourceChanged();
+            if (mEvent == SELECTED) {
+                for (Chip chip : mChips) {
+                    notifyChipSelected(chip);
+                }
+            } else if (mEvent == UNSELECTED) {
+                for (Chip chip : mChips) {
+                    notifyChipUnselected(chip);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Nested class that holds an immutable copy of all the chips.
+     */
+    private static final class Snapshot {
+        /* Flags of the chips that changed between snapshots */
+        static final int ORIGINAL = 1;
+        static final int FILTERED = 2;
+        static final int SELECTED = 4;
+        static final int ALL = ORIGINAL | FILTERED | SELECTED;
+
+        final List<Chip> originalList;
+        final List<Chip> filteredList;
+        final List<Chip> selectedList;
+        final long version;
+        /* Sets of the lists, built the first time a chip is looked up */
+        private volatile Set<Chip> originalSet;
+        private volatile Set<Chip> filteredSet;
+        private volatile Set<Chip> selectedSet;
+
+        /* Construct an empty snapshot */
+        Snapshot() {
+            this.originalList = Collections.emptyList();
+            this.filteredList = Collections.emptyList();
+            this.selectedList = Collections.emptyList();
+            this.version = 0;
+        }
+
+        private Snapshot(Snapshot previous, Collection<Chip> original, Collection<Chip> filtered,
+                         Collection<Chip> selected, int changed, long version) {
+            if ((changed & ORIGINAL) != 0) {
+                this.originalList = Collections.unmodifiableList(new ArrayList<>(original));
+            } else {
+                this.originalList = previous.originalList;
+                this.originalSet = previous.originalSet;
+            }
+            if ((changed & FILTERED) != 0) {
+                this.filteredList = Collections.unmodifiableList(new ArrayList<>(filtered));
+            } else {
+                this.filteredList = previous.filteredList;
+                this.filteredSet = previous.filteredSet;
+            }
+            if ((changed & SELECTED) != 0) {
+                this.selectedList = Collections.unmodifiableList(new ArrayList<>(selected));
+            } else {
+                this.selectedList = previous.selectedList;
+                this.selectedSet = previous.selectedSet;
+            }
+            this.version = version;
+        }
+
+        /**
+         * Creates the next snapshot, copying only the chips that changed.
+         *
+         * @param original Latest original chips
+         * @param filtered Latest filtered chips
+         * @param selected Latest selected chips
+         * @param changed Chips that changed since this snapshot (like {@link #SELECTED})
+         * @param version Version of the latest chips
+         * @return {@link Snapshot}
+         */
+        Snapshot next(Collection<Chip> original, Collection<Chip> filtered,
+                      Collection<Chip> selected, int changed, long version) {
+            return new Snapshot(this, original, filtered, selected, changed, version);
+        }
+
+        Set<Chip> original() {
+            Set<Chip> set = originalSet;
+            if (set == null) {
+                originalSet = set = new HashSet<>(originalList);
+            }
+            return set;
+        }
+
+        Set<Chip> filtered() {
+            Set<Chip> set = filteredSet;
+            if (set == null) {
+                filteredSet = set = new HashSet<>(filteredList);
+            }
+            return set;
+        }
+
+        Set<Chip> selected() {
+            Set<Chip> set = selectedSet;
+            if (set == null) {
+                selectedSet = set = new HashSet<>(selectedList);
+            }
+            return set;
+        }
+    }
+
+
+    /**
+     * Implementation of {@link Executor} that runs everything on the main thread.
+     */
+    private static final class MainThreadExecutor implements Executor {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            mHandler.post(command);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.tylersuehr.chips;
+import android.database.Cursor;
+import android.util.LruCache;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Implementation of {@link ChipCatalog} that reads its rows from a {@link Cursor}.
+ *
+ * A chip is only created from its cursor row when it's needed (like when it's being
+ * displayed, or matches a search), using the given {@link RowMapper}. The most
+ * recently used chips are cached, so a chip that's displayed again isn't re-created.
+ * Searching only reads the title and subtitle of each row.
+ *
+ * Chips this didn't create (like chips selected from a previous cursor, before it was
+ * reloaded) can only be found in it by their id, if it's given the cursor's id column;
+ * their ids must then be the numbers in that column. The ids are read from the cursor,
+ * and sorted, the first time a chip is found by its id.
+ *
+ * The cursor is shared between threads, so every access to it is synchronized on
+ * the cursor itself. This doesn't own the cursor, so it won't close it; before the
+ * cursor is closed (like when its loader is reset), stop using this catalog, like by
+ * calling {@link ChipsInputLayout#clearFilteredChips()}, or reading it will crash.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class CursorChipCatalog implements ChipCatalog, ChipCatalog.IdIndex {
+    private static final int DEFAULT_CACHE_SIZE = 64;
+
+    private final Cursor mCursor;
+    private final RowMapper mMapper;
+    private final int mCount;
+    /* Column of the chip ids, or -1 if chips can't be found by id */
+    private final int mIdColumn;
+
+    /* Most recently used chips, by row */
+    private final LruCache<Integer, Chip> mChips;
+    /* Rows of the chips created by this, as long as they are in use */
+    private final Map<Chip, Integer> mRows = new WeakHashMap<>();
+    /* Id of each row, and the rows sorted by their id, read when first needed */
+    private long[] mIds;
+    private int[] mRowsById;
+
+
+    public CursorChipCatalog(@NonNull Cursor cursor, @NonNull RowMapper mapper) {
+        this(cursor, mapper, DEFAULT_CACHE_SIZE, null);
+    }
+
+    public CursorChipCatalog(@NonNull Cursor cursor, @NonNull RowMapper mapper, int cacheSize) {
+        this(cursor, mapper, cacheSize, null);
+    }
+
+    /**
+     * @param cursor {@link Cursor} of the rows
+     * @param mapper {@link RowMapper} that creates the chips
+     * @param idColumn Column of the chip ids (like {@code _id}), so chips this didn't
+     *        create can be found by their id; or null if they can't
+     */
+    public CursorChipCatalog(@NonNull Cursor cursor, @NonNull RowMapper mapper,
+                             @Nullable String idColumn) {
+        this(cursor, mapper, DEFAULT_CACHE_SIZE, idColumn);
+    }
+
+    public CursorChipCatalog(@NonNull Cursor cursor, @NonNull RowMapper mapper,
+                             int cacheSize, @Nullable String idColumn) {
+        if (cursor == null) {
+            throw new NullPointerException("Cursor cannot be null!");
+        }
+        if (mapper == null) {
+            throw new NullPointerException("Row mapper cannot be null!");
+        }
+        mCursor = cursor;
+        mMapper = mapper;
+        mCount = cursor.getCount();
+        mIdColumn = idColumn != null ? cursor.getColumnIndexOrThrow(idColumn) : -1;
+        mChips = new LruCache<>(cacheSize);
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @NonNull
+    @Override
+    public Chip getChip(int row) {
+        synchronized (mCursor) {
+            Chip chip = mChips.get(row);
+            if (chip == null) {
+                moveToRow(row);
+                chip = mMapper.createChip(mCursor, row);
+                mChips.put(row, chip);
+                mRows.put(chip, row);
+            }
+            return chip;
+        }
+    }
+
+    @Override
+    public int indexOf(@NonNull Chip chip) {
+        synchronized (mCursor) {
+            final Integer row = mRows.get(chip);
+            if (row != null) {
+                return row;
+            }
+        }
+        final Object id = chip.getId();
+        return id instanceof Long || id instanceof Integer
+                ? indexOfId(((Number)id).longValue())
+                : -1;
+    }
+
+    @Override
+    public int indexOfId(long id) {
+        if (mIdColumn == -1) { return -1; }
+        synchronized (mCursor) {
+            if (mRowsById == null) {
+                // Only happens the first time a chip is found by its id
+                final long[] ids = new long[mCount];
+                for (int row = 0; row < mCount; row++) {
+                    moveToRow(row);
+                    ids[row] = mCursor.getLong(mIdColumn);
+                }
+                mIds = ids;
+                mRowsById = ChipRowBuffer.sortedOrder(ids, mCount);
+            }
+
+            int low = 0;
+            int high = mCount - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final long midId = mIds[mRowsById[mid]];
+                if (midId < id) {
+                    low = mid + 1;
+                } else if (midId > id) {
+                    high = mid - 1;
+                } else {
+                    return mRowsById[mid];
+                }
+            }
+            return -1;
+        }
+    }
+
+    @NonNull
+    @Override
+    public CharSequence getTitle(int row) {
+        synchronized (mCursor) {
+            final Chip chip = mChips.get(row);
+            if (chip != null) {
+                return chip.getTitle();
+            }
+            moveToRow(row);
+            return mMapper.getTitle(mCursor);
+        }
+    }
+
+    @Nullable
+    @Override
+    public CharSequence getSubtitle(int row) {
+        synchronized (mCursor) {
+            final Chip chip = mChips.get(row);
+            if (chip != null) {
+                return chip.getSubtitle();
+            }
+            moveToRow(row);
+            return mMapper.getSubtitle(mCursor);
+        }
+    }
+
+    @Override
+    public boolean matches(int row, String pattern) {
+        synchronized (mCursor) {
+            final Chip chip = mChips.get(row);
+            if (chip != null) {
+                return Utils.matchesFilter(chip.getTitle(), chip.getSubtitle(), pattern);
+            }
+            moveToRow(row);
+            return Utils.matchesFilter(mMapper.getTitle(mCursor), mMapper.getSubtitle(mCursor), pattern);
+        }
+    }
+
+    /* Must be called while synchronized on mCursor */
+    private void moveToRow(int row) {
+        if (!mCursor.moveToPosition(row)) {
+            throw new IndexOutOfBoundsException("Row " + row + ", count " + mCount);
+        }
+    }
+
+
+    /**
+     * Defines how a cursor row is turned into a chip.
+     *
+     * The cursor is always moved to the row before any of these are called.
+     */
+    public interface RowMapper {
+        @NonNull
+        Chip createChip(Cursor cursor, int row);
+
+        @NonNull
+        String getTitle(Cursor cursor);
+
+        @Nullable
+        String getSubtitle(Cursor cursor);
+    }
+}
@@ -20,8 +20,9 @@ import android.widget.ImageView;
 class DefaultImageRenderer implements ChipImageRenderer {
     @Override
     public void renderAvatar(ImageView imageView, Chip chip) {
-        if (chip.getAvatarUri() != Uri.EMPTY) {
-            imageView.setImageURI(chip.getAvatarUri());
+        final Uri avatarUri = chip.getAvatarUri();
+        if (avatarUri != null && avatarUri != Uri.EMPTY) {
+            imageView.setImageURI(avatarUri);
         } else if (chip.getAvatarDrawable() != null) {
             imageView.setImageDrawable(chip.getAvatarDrawable());
         } else {
@@ -0,0 +1,128 @@
+package com.tylersuehr.chips;
+import android.os.Build;
+import android.util.LruCache;
+import android.widget.TextView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Caches the titles and subtitles of filterable chips as {@link PrecomputedTextCompat},
+ * so the filter can measure the text of its results on its own background thread, and
+ * binding a filterable chip only sets text that's already been measured.
+ *
+ * Text is precomputed for the style (text size, typeface, and so on) of the filterable
+ * chip views; when that style changes, the cached text is dropped. Precomputed text
+ * doesn't depend on the width it's displayed in, so it isn't kept per width.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+final class FilterTextCache {
+    /* Number of texts cached, of titles and of subtitles each */
+    private static final int MAX_TEXTS = 256;
+    /* Number of results of a filter that are precomputed, about a few screens of them */
+    private static final int MAX_PRECOMPUTED_RESULTS = 32;
+
+    private final LruCache<String, PrecomputedTextCompat> mTitles = new LruCache<>(MAX_TEXTS);
+    private final LruCache<String, PrecomputedTextCompat> mSubtitles = new LruCache<>(MAX_TEXTS);
+    /* Style text is precomputed for, or null until a filterable chip view exists */
+    private volatile PrecomputedTextCompat.Params mTitleParams;
+    private volatile PrecomputedTextCompat.Params mSubtitleParams;
+
+
+    /**
+     * Precomputes text for the style of the given views, if it changed, dropping the
+     * text cached for the previous one. Called when a view's style is set.
+     *
+     * @param title Title {@link TextView} of a filterable chip
+     * @param subtitle Subtitle {@link TextView} of a filterable chip
+     */
+    void setStyle(TextView title, TextView subtitle) {
+        final PrecomputedTextCompat.Params titleParams = TextViewCompat.getTextMetricsParams(title);
+        if (!titleParams.equals(mTitleParams)) {
+            mTitleParams = titleParams;
+            mTitles.evictAll();
+        }
+        final PrecomputedTextCompat.Params subtitleParams = TextViewCompat.getTextMetricsParams(subtitle);
+        if (!subtitleParams.equals(mSubtitleParams)) {
+            mSubtitleParams = subtitleParams;
+            mSubtitles.evictAll();
+        }
+    }
+
+    /**
+     * Precomputes the titles and subtitles of the first of the given chips. This should
+     * be called on a background thread.
+     *
+     * @param chips Filtered chips, in the order they're displayed
+     */
+    void precompute(List<? extends Chip> chips) {
+        final PrecomputedTextCompat.Params titleParams = mTitleParams;
+        final PrecomputedTextCompat.Params subtitleParams = mSubtitleParams;
+        if (titleParams == null || subtitleParams == null) { return; }
+
+        final int count = Math.min(chips.size(), MAX_PRECOMPUTED_RESULTS);
+        for (int i = 0; i < count; i++) {
+            final Chip chip = chips.get(i);
+            precompute(mTitles, chip.getTitle(), titleParams, true);
+            precompute(mSubtitles, chip.getSubtitle(), subtitleParams, false);
+        }
+    }
+
+    /**
+     * Sets the precomputed title on the given view, if the title was precomputed.
+     *
+     * @param view Title {@link TextView}
+     * @param title Title of the chip
+     * @return True if it was set
+     */
+    boolean setTitle(TextView view, String title) {
+        return setText(view, mTitles, title, mTitleParams);
+    }
+
+    /**
+     * Sets the precomputed subtitle on the given view, if the subtitle was precomputed.
+     *
+     * @param view Subtitle {@link TextView}
+     * @param subtitle Subtitle of the chip
+     * @return True if it was set
+     */
+    boolean setSubtitle(TextView view, String subtitle) {
+        return setText(view, mSubtitles, subtitle, mSubtitleParams);
+    }
+
+    /**
+     * Checks if precomputing text is worth it on this device; before Lollipop, text
+     * isn't measured ahead of time.
+     *
+     * @return True if text can be precomputed
+     */
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+
+    private void precompute(LruCache<String, PrecomputedTextCompat> cache,
+                            String text, PrecomputedTextCompat.Params params, boolean title) {
+        if (text == null || cache.get(text) != null) { return; }
+        final PrecomputedTextCompat precomputed = PrecomputedTextCompat.create(text, params);
+
+        // Drop it if the style changed while it was measured
+        if (params == (title ? mTitleParams : mSubtitleParams)) {
+            cache.put(text, precomputed);
+        }
+    }
+
+    private static boolean setText(TextView view, LruCache<String, PrecomputedTextCompat> cache,
+                                   String text, PrecomputedTextCompat.Params params) {
+        if (text == null) { return false; }
+        final PrecomputedTextCompat precomputed = cache.get(text);
+        if (precomputed == null || !precomputed.getParams().equals(params)) {
+            return false;
+        }
+        TextViewCompat.setPrecomputedText(view, precomputed);
+        return true;
+    }
+}
@@ -1,6 +1,5 @@
 package com.tylersuehr.chips;
 
-import android.graphics.PorterDuff;
 import androidx.recyclerview.widget.RecyclerView;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
@@ -10,6 +9,10 @@ import android.widget.Filter;
 import android.widget.Filterable;
 import android.widget.TextView;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * Copyright © 2017 Tyler Suehr
  *
@@ -27,11 +30,24 @@ import android.widget.TextView;
  */
 class FilterableChipsAdapter
         extends RecyclerView.Adapter<FilterableChipsAdapter.Holder>
-        implements Filterable, ChipDataSource.ChangeObserver {
+        implements Filterable, ChipDataSource.ChipChangeObserver {
+    /* Distinct from the view types of ChipsAdapter, so they can share a pool */
+    static final int CHIP = 16;
+
     private final OnFilteredChipClickListener mListener;
-    private final ChipDataSource mDataSource;
+    private ChipDataSource mDataSource;
     private final ChipOptions mOptions;
     private ChipFilter mFilter;
+    /* Chips matching the last filter pattern, or null if nothing is filtered */
+    private List<Chip> mFilterResults;
+    /* True while this is registered as an observer of the data source */
+    private boolean mObserving;
+    /* Displayed filter results, if they're diffed in the background; otherwise null */
+    private ChipListDiffer mDiffer;
+    /* Stable ids of the displayed chips */
+    private final ChipIdMap mIds = new ChipIdMap();
+    /* Precomputed text of filter results, if it's precomputed; otherwise null */
+    private FilterTextCache mTextCache;
 
 
     FilterableChipsAdapter(ChipDataSource chipDataSource,
@@ -40,78 +56,291 @@ class FilterableChipsAdapter
         mDataSource = chipDataSource;
         mOptions = chipOptions;
         mListener = listener;
-
-        // Register an observer on chip data source
-        mDataSource.addChangedObserver(this);
+        setHasStableIds(true);
     }
 
     @Override
     public int getItemCount() {
+        if (mFilterResults != null) {
+            return mDiffer != null ? mDiffer.getList().size() : mFilterResults.size();
+        }
         return mDataSource.getFilteredChips().size();
     }
 
+    @Override
+    public int getItemViewType(int position) {
+        return CHIP;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mIds.getId(getChip(position));
+    }
+
     @Override
     public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
         LayoutInflater inflater = LayoutInflater.from(parent.getContext());
         View v = inflater.inflate(R.layout.chip_view_filterable, parent, false);
-        return new Holder(v);
+        final Holder holder = new Holder(v, this);
+        applyStyle(holder);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(Holder holder, int position, List<Object> payloads) {
+        final Chip chip = getChip(position);
+        bindChip(holder, chip, adopt(holder) | ChipBinding.changesOf(payloads, chip));
     }
 
     @Override
     public void onBindViewHolder(Holder holder, int position) {
-        final Chip chip = mDataSource.getFilteredChip(position);
+        // Stable ids bring back the holder that displayed this chip, so only
+        // what changed about it is displayed again
+        bindChip(holder, getChip(position), adopt(holder));
+    }
+
+    @Override
+    public Filter getFilter() {
+        if (mFilter == null) {
+            mFilter = new ChipFilter();
+        }
+        return mFilter;
+    }
+
+    @Override
+    public void onChipChanged(Chip chip, int changes) {
+        final int position = positionOf(chip);
+        if (position > -1) {
+            notifyItemChanged(position, ChipBinding.payload(chip, changes));
+        }
+    }
+
+    /**
+     * Sets how many holders of filterable chips the given pool keeps, for a pool
+     * shared by several layouts.
+     *
+     * @param pool {@link RecyclerView.RecycledViewPool}
+     */
+    static void setMaxRecycledViews(RecyclerView.RecycledViewPool pool) {
+        // Enough to fill the filterable list, which is only shown by one layout at a time
+        pool.setMaxRecycledViews(CHIP, 16);
+    }
+
+    /**
+     * Displays the style of every chip again, after the options changed.
+     */
+    void notifyStyleChanged() {
+        notifyItemRangeChanged(0, getItemCount(), ChipBinding.STYLE_PAYLOAD);
+    }
+
+    @Override
+    public void onChipDataSourceChanged() {
+        if (mFilterResults == null) {
+            final List<Chip> filtered = mDataSource.getFilteredChips();
+            mIds.trim(filtered, filtered.size());
+        } else if (mDiffer == null) {
+            mIds.trim(mFilterResults, mFilterResults.size());
+        }
+
+        // Drop any filter results that are no longer filterable, like
+        // a chip that was just taken, so they can't be clicked again
+        if (mFilterResults != null) {
+            for (Iterator<Chip> it = mFilterResults.iterator(); it.hasNext();) {
+                if (!mDataSource.existsInFiltered(it.next())) {
+                    it.remove();
+                }
+            }
+            if (mDiffer != null) {
+                mDiffer.submit(mFilterResults);
+                return;
+            }
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Sets whether changes to the filter results are diffed in the background, and
+     * dispatched as item updates, instead of refreshing every chip.
+     *
+     * Only filter results are diffed; all the filterable chips (shown when nothing
+     * is filtered) can be far too many to diff.
+     *
+     * @param enabled True if changes should be diffed
+     */
+    void setAsyncDiffingEnabled(boolean enabled) {
+        if (enabled == (mDiffer != null)) { return; }
+        if (enabled) {
+            mDiffer = new ChipListDiffer(this, new Runnable() {
+                @Override
+                public void run() {
+                    mIds.trim(mDiffer.getList(), mDiffer.getList().size());
+                }
+            });
+            if (mFilterResults != null) {
+                mDiffer.reset(mFilterResults);
+            }
+        } else {
+            mDiffer = null;
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Sets whether the titles and subtitles of filter results are measured on the
+     * filtering thread, so binding them doesn't measure them on the main thread.
+     *
+     * @param enabled True if text should be precomputed
+     */
+    void setTextPrecomputingEnabled(boolean enabled) {
+        enabled &= FilterTextCache.isSupported();
+        if (enabled == (mTextCache != null)) { return; }
+        mTextCache = enabled ? new FilterTextCache() : null;
+
+        // Find the style of the views to precompute text for
+        notifyStyleChanged();
+    }
+
+    /**
+     * Changes the data source this adapts, and observes it instead of the current one.
+     * @param dataSource {@link ChipDataSource}
+     */
+    void setDataSource(ChipDataSource dataSource) {
+        if (mObserving) {
+            mDataSource.removeChangedObserver(this);
+            dataSource.addChangedObserver(this);
+        }
+        mDataSource = dataSource;
+        mFilterResults = null;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Starts observing the data source, catching up on any change missed while
+     * this wasn't observing it. Called when the layout is attached to a window.
+     */
+    void startObserving() {
+        if (mObserving) { return; }
+        mObserving = true;
+        mDataSource.addChangedObserver(this);
+        onChipDataSourceChanged();
+    }
+
+    /**
+     * Stops observing the data source, so a detached layout isn't notified, or kept
+     * from being collected, by a data source that outlives it.
+     */
+    void stopObserving() {
+        if (!mObserving) { return; }
+        mObserving = false;
+        mDataSource.removeChangedObserver(this);
+    }
+
+    /**
+     * Displays the given chip in the given holder, only updating the parts of it that
+     * changed since it was last displayed, or that are given as changed.
+     *
+     * @param holder {@link Holder}
+     * @param chip {@link Chip}
+     * @param changes Parts to display again, even if they look the same
+     */
+    private void bindChip(Holder holder, Chip chip, int changes) {
+        changes |= holder.binding.update(chip);
+        if ((changes & ChipDataSource.CHANGE_STYLE) != 0) {
+            applyStyle(holder);
+        }
 
         // Set the chip avatar, if possible
-        mOptions.mImageRenderer.renderAvatar(holder.image, chip);
+        if ((changes & ChipDataSource.CHANGE_AVATAR) != 0) {
+            mOptions.mImageRenderer.renderAvatar(holder.image, chip);
+        }
 
-        // Set the chip title
-        holder.title.setText(chip.getTitle());
-        holder.title.setTypeface(mOptions.mTypeface);
+        // Set the chip title, already measured if it was precomputed
+        if ((changes & ChipDataSource.CHANGE_TITLE) != 0) {
+            if (mTextCache == null || !mTextCache.setTitle(holder.title, chip.getTitle())) {
+                holder.title.setText(chip.getTitle());
+            }
+        }
 
         // Set the chip subtitle, if possible
-        if (chip.getSubtitle() != null) {
-            holder.subtitle.setVisibility(View.VISIBLE);
-            holder.subtitle.setText(chip.getSubtitle());
-            holder.subtitle.setTypeface(mOptions.mTypeface);
-        } else {
-            holder.subtitle.setVisibility(View.GONE);
+        if ((changes & ChipDataSource.CHANGE_SUBTITLE) != 0) {
+            if (chip.getSubtitle() != null) {
+                holder.subtitle.setVisibility(View.VISIBLE);
+                if (mTextCache == null || !mTextCache.setSubtitle(holder.subtitle, chip.getSubtitle())) {
+                    holder.subtitle.setText(chip.getSubtitle());
+                }
+            } else {
+                holder.subtitle.setVisibility(View.GONE);
+            }
         }
+    }
+
+    /**
+     * Takes over a holder another adapter created, if it came from a shared pool.
+     *
+     * @param holder {@link Holder}
+     * @return Parts of the chip that must be displayed again
+     */
+    private int adopt(Holder holder) {
+        if (holder.adapter == this) { return 0; }
+        holder.adapter = this;
+        return ChipDataSource.CHANGE_STYLE;
+    }
 
-        // Set chip colors from options, if possible
-        if (mOptions.mFilterableListBackgroundColor != null) {
-            holder.itemView.getBackground().setColorFilter(mOptions
-                    .mFilterableListBackgroundColor.getDefaultColor(), PorterDuff.Mode.SRC_ATOP);
+    private void applyStyle(Holder holder) {
+        final ChipStyle style = mOptions.getStyle(holder.itemView.getContext());
+        if (holder.style != style) {
+            holder.style = style;
+            holder.title.setTypeface(style.typeface);
+            holder.subtitle.setTypeface(style.typeface);
+
+            // Set chip colors from options, if possible
+            holder.itemView.getBackground().setColorFilter(style.filterableBackgroundColorFilter);
+            if (style.filterableTextColor != null) {
+                holder.title.setTextColor(style.filterableTextColor);
+                holder.subtitle.setTextColor(style.filterableTextColor);
+            }
         }
-        if (mOptions.mFilterableListTextColor != null) {
-            holder.title.setTextColor(mOptions.mFilterableListTextColor);
-            holder.subtitle.setTextColor(mOptions.mFilterableListTextColor);
+        if (mTextCache != null) {
+            mTextCache.setStyle(holder.title, holder.subtitle);
         }
     }
 
-    @Override
-    public Filter getFilter() {
-        if (mFilter == null) {
-            mFilter = new ChipFilter();
+    /* Finds the displayed position of the chip, which data sources can do quickly */
+    private int positionOf(Chip chip) {
+        if (mFilterResults != null) {
+            return mDiffer != null ? mDiffer.getList().indexOf(chip) : mFilterResults.indexOf(chip);
         }
-        return mFilter;
+        return mDataSource.getFilteredChips().indexOf(chip);
     }
 
-    @Override
-    public void onChipDataSourceChanged() {
-        notifyDataSetChanged();
+    private Chip getChip(int position) {
+        if (mFilterResults != null) {
+            return mDiffer != null ? mDiffer.getList().get(position) : mFilterResults.get(position);
+        }
+        return mDataSource.getFilteredChip(position);
     }
 
 
     /**
-     * Nested inner-subclass of {@link RecyclerView.ViewHolder} to hold
+     * Nested subclass of {@link RecyclerView.ViewHolder} to hold
      * references to the views in the filterable list item.
+     *
+     * Holders can be shared with other adapters through a shared pool, so they keep
+     * the adapter they were last bound by, instead of the one that created them.
      */
-    class Holder extends RecyclerView.ViewHolder implements View.OnClickListener {
+    static class Holder extends RecyclerView.ViewHolder implements View.OnClickListener {
         CircleImageView image;
         TextView title, subtitle;
+        /* What's displayed of the chip */
+        final ChipBinding binding = new ChipBinding();
+        /* Adapter this was last bound by */
+        FilterableChipsAdapter adapter;
+        /* Style last applied, which doesn't need to be applied again */
+        ChipStyle style;
 
-        Holder(View v) {
+        Holder(View v, FilterableChipsAdapter adapter) {
             super(v);
+            this.adapter = adapter;
             v.setOnClickListener(this);
             this.image = v.findViewById(R.id.image);
             this.title = v.findViewById(R.id.title);
@@ -120,15 +349,18 @@ class FilterableChipsAdapter
 
         @Override
         public void onClick(View v) {
-            // TODO: POSSIBLE OPTIMIZATION
-            // Have takeChip(int) return a Chip object; which can be null checked for callback
-
             // Take the chip from the filtered chip list
-            final Chip chip = mDataSource.getFilteredChip(getAdapterPosition());
-            mDataSource.takeChip(chip);
+            final int position = getAdapterPosition();
+            if (position < 0) { return; }
+            final Chip chip = adapter.getChip(position);
+            if (adapter.mDiffer != null && !adapter.mDataSource.existsInFiltered(chip)) {
+                // Still displayed while the diff that removes it is in progress
+                return;
+            }
+            adapter.mDataSource.takeChip(chip);
 
             // Trigger callback with the clicked chip
-            mListener.onFilteredChipClick(chip);
+            adapter.mListener.onFilteredChipClick(chip);
         }
     }
 
@@ -144,40 +376,62 @@ class FilterableChipsAdapter
     /**
      * Concrete implementation of {@link Filter} to help us mFilter our list of filterable chips.
      *
-     * This works by cloning the list of filterable chips, so that the original filterable chips
-     * list is retained, and then inclusively filtering the data source filterable chips list.
+     * This works by collecting the original filterable chips that match the pattern into a
+     * new list on the filtering thread, so the data source itself is never modified (or
+     * handed out) while it's being filtered.
      *
-     * Once the data source filterable chips list is filtered, the adapter will notify data
-     * set changes have happened.
+     * Once the matching chips are published, the adapter displays them instead of the data
+     * source filterable chips and will notify data set changes have happened.
      *
-     * If the user removes the mFilter (removing all the typed characters), the original list
-     * of filterable chips will be added back into the data source filterable chips.
+     * If the user removes the mFilter (removing all the typed characters), the adapter will
+     * display the data source filterable chips again.
      */
     private final class ChipFilter extends Filter {
         @Override
         protected FilterResults performFiltering(CharSequence constraint) {
             FilterResults results = new FilterResults();
-
-            mDataSource.getFilteredChips().clear();
             if (TextUtils.isEmpty(constraint)) {
-                mDataSource.getFilteredChips().addAll(mDataSource.getOriginalChips());
+                return results;
+            }
+
+            final String pattern = constraint.toString().toLowerCase().trim();
+            final List<Chip> matches;
+            if (mDataSource instanceof SearchableChipDataSource) {
+                // Let the data source find the matches itself
+                matches = ((SearchableChipDataSource)mDataSource).search(pattern);
             } else {
-                final String pattern = constraint.toString().toLowerCase().trim();
+                matches = new ArrayList<>();
                 for (Chip chip : mDataSource.getOriginalChips()) {
-                    if (chip.getTitle().toLowerCase().contains(pattern)
-                            || (chip.getSubtitle() != null && chip.getSubtitle().toLowerCase().replaceAll("\\s", "").contains(pattern))) {
-                        mDataSource.getFilteredChips().add(chip);
+                    if (Utils.matchesFilter(chip.getTitle(), chip.getSubtitle(), pattern)) {
+                        matches.add(chip);
                     }
                 }
             }
 
-            results.values = mDataSource.getFilteredChips();
-            results.count = mDataSource.getFilteredChips().size();
+            // Measure the text of the first matches now, rather than while binding them
+            final FilterTextCache textCache = mTextCache;
+            if (textCache != null) {
+                textCache.precompute(matches);
+            }
+
+            results.values = matches;
+            results.count = matches.size();
             return results;
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         protected void publishResults(CharSequence constraint, FilterResults results) {
+            final boolean wasFiltered = mFilterResults != null;
+            mFilterResults = (List<Chip>)results.values;
+            if (mDiffer != null && mFilterResults != null) {
+                if (wasFiltered) {
+                    // Only animate the chips that stopped or started matching
+                    mDiffer.submit(mFilterResults);
+                    return;
+                }
+                mDiffer.reset(mFilterResults);
+            }
             notifyDataSetChanged();
         }
     }
@@ -0,0 +1,409 @@
+package com.tylersuehr.chips;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import androidx.annotation.NonNull;
+import androidx.appcompat.widget.AppCompatImageView;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * This view displays the normal chip, like {@link ChipView}, but as a single view that
+ * draws its background, avatar, label and delete icon itself, instead of inflating a
+ * layout of them. There's no layout to inflate or constraints to solve, so it's much
+ * cheaper to create, measure, and keep around when many chips are displayed.
+ *
+ * The label is measured once when it changes, and ellipsized only when the chip is too
+ * narrow to fit it. Touches on the delete icon are told apart from touches on the chip
+ * by this view, since there's no delete button.
+ *
+ * Avatars are still rendered by the {@link ChipImageRenderer}, into an image view that's
+ * never added to the view hierarchy; this draws whatever image it's given.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class FlatChipView extends View implements ChipComponent {
+    private static final int TOUCH_NONE = 0;
+    private static final int TOUCH_CHIP = 1;
+    private static final int TOUCH_DELETE = 2;
+
+    private final Paint mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final TextPaint mLabelPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mAvatarPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final RectF mBackgroundBounds = new RectF();
+    private final Rect mDeleteBounds = new Rect();
+    private final Matrix mAvatarMatrix = new Matrix();
+    private final Path mAvatarClip = new Path();
+
+    private final int mTouchSlop;
+
+    private ChipOptions mOptions;
+    private ChipImageRenderer mImageRenderer;
+    /* Style last applied, with the sizes and colors of the parts of the chip */
+    private ChipStyle mStyle;
+    /* True if this displays the summary of collapsed chips, rather than a chip */
+    private boolean mSummary;
+
+    private Chip mChip;
+    /* What's displayed of the chip, so only the parts that changed are displayed again */
+    private final ChipBinding mBinding = new ChipBinding();
+    private CharSequence mLabel = "";
+    /* Width of the whole label, or -1 if it hasn't been measured yet */
+    private float mLabelWidth = -1;
+    /* Label as drawn, ellipsized to fit if needed, or null if it must be found again */
+    private CharSequence mDrawnLabel;
+
+    /* Image view the avatar is rendered into, created when first needed */
+    private AvatarTarget mAvatarTarget;
+    /* Bitmap the avatar shader draws, if the avatar is a bitmap */
+    private Bitmap mAvatarBitmap;
+
+    private OnChipClickListener mClickListener;
+    private OnChipDeleteListener mDeleteListener;
+    private int mTouchTarget = TOUCH_NONE;
+
+
+    FlatChipView(@NonNull Context context) {
+        super(context);
+        mTouchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        mLabelPaint.setTextSize(getResources().getDimension(R.dimen.chip_label_text_size));
+        setClickable(true);
+    }
+
+    @Override
+    public void setChipOptions(ChipOptions options) {
+        mOptions = options;
+        mImageRenderer = options.mImageRenderer;
+
+        final ChipStyle style = options.getStyle(getContext());
+        if (style == mStyle) { return; }
+        mStyle = style;
+        mBackgroundPaint.setColor(style.flatChipColor);
+        mDrawnLabel = null;
+
+        // The label must be measured again in the new typeface
+        if (mLabelPaint.getTypeface() != style.typeface) {
+            mLabelPaint.setTypeface(style.typeface);
+            onLabelChanged();
+        }
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Displays the information stored in the given chip object.
+     * @param chip {@link Chip}
+     */
+    public void inflateFromChip(Chip chip) {
+        bindChip(chip, ChipDataSource.CHANGE_TITLE | ChipDataSource.CHANGE_AVATAR);
+    }
+
+    /**
+     * Displays the given chip, only updating the parts of it that changed since it
+     * was last displayed, or that are given as changed.
+     *
+     * @param chip {@link Chip}
+     * @param changes Parts to display again, even if they look the same
+     */
+    void bindChip(Chip chip, int changes) {
+        mChip = chip;
+        changes |= mBinding.update(chip);
+        if ((changes & ChipDataSource.CHANGE_STYLE) != 0 && mOptions != null) {
+            setChipOptions(mOptions);
+        }
+        if ((changes & ChipDataSource.CHANGE_TITLE) != 0) {
+            setLabel(chip.getTitle());
+        }
+        if ((changes & ChipDataSource.CHANGE_AVATAR) != 0 && mStyle != null && mStyle.showAvatar) {
+            if (mImageRenderer == null) {
+                throw new NullPointerException("Image renderer must be set!");
+            }
+            if (mAvatarTarget == null) {
+                mAvatarTarget = new AvatarTarget(getContext(), mStyle.chipHeight);
+            }
+            mImageRenderer.renderAvatar(mAvatarTarget, chip);
+            invalidate();
+        }
+    }
+
+    /**
+     * Displays this as the summary of chips that are collapsed, showing only how many
+     * chips are hidden, instead of a chip.
+     *
+     * @param hiddenCount Number of chips hidden
+     */
+    void bindSummary(int hiddenCount) {
+        mChip = null;
+        mSummary = true;
+        setLabel(getResources().getString(R.string.chips_summary, hiddenCount));
+    }
+
+    public Chip getChip() {
+        return mChip;
+    }
+
+    /**
+     * Sets an OnClickListener on the FlatChipView itself.
+     * @param listener {@link OnChipClickListener}
+     */
+    public void setOnChipClicked(OnChipClickListener listener) {
+        mClickListener = listener;
+    }
+
+    /**
+     * Sets an OnClickListener on the delete icon.
+     * @param listener {@link OnChipDeleteListener}
+     */
+    public void setOnDeleteClicked(OnChipDeleteListener listener) {
+        mDeleteListener = listener;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mStyle == null) {
+            // Nothing can be displayed without options
+            setMeasuredDimension(0, 0);
+            return;
+        }
+        final int width = getLeftWidth() + (int)Math.ceil(getLabelWidth()) + getRightWidth();
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec),
+                resolveSize(mStyle.chipHeight, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mDrawnLabel = null;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mStyle == null) { return; }
+        final int width = getWidth();
+        final int height = getHeight();
+
+        // Draw the background
+        final float radius = height / 2f;
+        mBackgroundBounds.set(0, 0, width, height);
+        canvas.drawRoundRect(mBackgroundBounds, radius, radius, mBackgroundPaint);
+
+        // Draw the avatar, if any
+        if (isAvatarShown()) {
+            drawAvatar(canvas, height);
+        }
+
+        // Draw the label, vertically centered
+        final int left = getLeftWidth();
+        if (mDrawnLabel == null) {
+            final float available = width - left - getRightWidth();
+            mDrawnLabel = getLabelWidth() <= available
+                    ? mLabel
+                    : TextUtils.ellipsize(mLabel, mLabelPaint, Math.max(available, 0),
+                            TextUtils.TruncateAt.END);
+        }
+        final ColorStateList textColor = mStyle.textColor;
+        mLabelPaint.setColor(textColor.getColorForState(getDrawableState(),
+                textColor.getDefaultColor()));
+        final float baseline = (height - mLabelPaint.descent() - mLabelPaint.ascent()) / 2f;
+        canvas.drawText(mDrawnLabel, 0, mDrawnLabel.length(), left, baseline, mLabelPaint);
+
+        // Draw the delete icon, if any
+        if (isDeleteShown()) {
+            // Every flat chip draws the same icon, so its bounds are set right before
+            final int deleteSize = mStyle.deleteSize;
+            final int deleteLeft = width - mStyle.smallMargin - deleteSize;
+            final int deleteTop = (height - deleteSize) >> 1;
+            mDeleteBounds.set(deleteLeft, deleteTop, deleteLeft + deleteSize, deleteTop + deleteSize);
+            mStyle.flatDeleteIcon.setBounds(mDeleteBounds);
+            mStyle.flatDeleteIcon.draw(canvas);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        final float x = event.getX();
+        final float y = event.getY();
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                if (mDeleteListener != null && mStyle != null && isDeleteShown()
+                        && x >= getWidth() - getRightWidth()) {
+                    mTouchTarget = TOUCH_DELETE;
+                } else {
+                    mTouchTarget = mClickListener != null ? TOUCH_CHIP : TOUCH_NONE;
+                }
+                return mTouchTarget != TOUCH_NONE;
+            case MotionEvent.ACTION_MOVE:
+                // Stop tracking a touch that left the chip
+                if (x < -mTouchSlop || y < -mTouchSlop
+                        || x > getWidth() + mTouchSlop || y > getHeight() + mTouchSlop) {
+                    mTouchTarget = TOUCH_NONE;
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+                if (mTouchTarget == TOUCH_DELETE) {
+                    playSoundEffect(SoundEffectConstants.CLICK);
+                    mDeleteListener.onChipDeleted(this);
+                } else if (mTouchTarget == TOUCH_CHIP) {
+                    performClick();
+                }
+                mTouchTarget = TOUCH_NONE;
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                mTouchTarget = TOUCH_NONE;
+                return true;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    @Override
+    public boolean performClick() {
+        super.performClick();
+        if (mClickListener != null) {
+            playSoundEffect(SoundEffectConstants.CLICK);
+            mClickListener.onChipClicked(this);
+        }
+        return true;
+    }
+
+    private void setLabel(CharSequence label) {
+        if (label == null) {
+            label = "";
+        }
+        if (!TextUtils.equals(mLabel, label)) {
+            mLabel = label;
+            setContentDescription(label);
+            onLabelChanged();
+        }
+    }
+
+    /* Measures and ellipsizes the label again, when it's next needed */
+    private void onLabelChanged() {
+        mLabelWidth = -1;
+        mDrawnLabel = null;
+        requestLayout();
+        invalidate();
+    }
+
+    private float getLabelWidth() {
+        if (mLabelWidth < 0) {
+            mLabelWidth = mLabelPaint.measureText(mLabel, 0, mLabel.length());
+        }
+        return mLabelWidth;
+    }
+
+    private boolean isAvatarShown() {
+        return mStyle.showAvatar && !mSummary;
+    }
+
+    private boolean isDeleteShown() {
+        return mStyle.showDelete && !mSummary;
+    }
+
+    /* Width in front of the label, for the avatar and margins */
+    private int getLeftWidth() {
+        return isAvatarShown() ? mStyle.chipHeight + mStyle.labelMargin : mStyle.edgeMargin;
+    }
+
+    /* Width behind the label, for the delete icon and margins */
+    private int getRightWidth() {
+        return isDeleteShown()
+                ? mStyle.smallMargin + mStyle.deleteSize + mStyle.smallMargin
+                : mStyle.edgeMargin;
+    }
+
+    private void drawAvatar(Canvas canvas, int size) {
+        final Drawable avatar = mAvatarTarget != null ? mAvatarTarget.getDrawable() : null;
+        if (avatar == null) { return; }
+
+        final Bitmap bitmap = avatar instanceof BitmapDrawable
+                ? ((BitmapDrawable)avatar).getBitmap() : null;
+        if (bitmap != null) {
+            // Draw the bitmap, center cropped, as a circle
+            if (bitmap != mAvatarBitmap) {
+                mAvatarBitmap = bitmap;
+                mAvatarPaint.setShader(new BitmapShader(bitmap,
+                        Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+            }
+            final float scale = (float)size / Math.min(bitmap.getWidth(), bitmap.getHeight());
+            mAvatarMatrix.setScale(scale, scale);
+            mAvatarMatrix.postTranslate((size - bitmap.getWidth() * scale) / 2f,
+                    (size - bitmap.getHeight() * scale) / 2f);
+            mAvatarPaint.getShader().setLocalMatrix(mAvatarMatrix);
+            canvas.drawCircle(size / 2f, size / 2f, size / 2f, mAvatarPaint);
+        } else {
+            // Any other drawable is clipped to a circle
+            mAvatarClip.reset();
+            mAvatarClip.addCircle(size / 2f, size / 2f, size / 2f, Path.Direction.CW);
+            final int count = canvas.save();
+            canvas.clipPath(mAvatarClip);
+            avatar.setBounds(0, 0, size, size);
+            avatar.draw(canvas);
+            canvas.restoreToCount(count);
+        }
+    }
+
+
+    /**
+     * Nested inner-subclass of {@link AppCompatImageView} that chip avatars are rendered
+     * into. It's never added to the view hierarchy; whenever its image changes (even
+     * after being loaded later, like by an image loading library), the chip is drawn
+     * again with the new image instead.
+     */
+    private final class AvatarTarget extends AppCompatImageView {
+        AvatarTarget(Context context, int size) {
+            super(context);
+            setScaleType(ScaleType.CENTER_CROP);
+
+            // Give it the size of the avatar, for renderers that load images to fit it
+            setLayoutParams(new ViewGroup.LayoutParams(size, size));
+            measure(MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY));
+            layout(0, 0, size, size);
+        }
+
+        @Override
+        public void invalidate() {
+            super.invalidate();
+            FlatChipView.this.invalidate();
+        }
+
+        @Override
+        public void invalidateDrawable(@NonNull Drawable dr) {
+            super.invalidateDrawable(dr);
+            FlatChipView.this.invalidate();
+        }
+    }
+
+
+    /**
+     * Defines callbacks for chip click events.
+     */
+    public interface OnChipClickListener {
+        void onChipClicked(FlatChipView v);
+    }
+
+    /**
+     * Defines callbacks for chip delete events.
+     */
+    public interface OnChipDeleteListener {
+        void onChipDeleted(FlatChipView v);
+    }
+}
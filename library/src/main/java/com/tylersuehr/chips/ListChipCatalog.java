@@ -0,0 +1,96 @@
+package com.tylersuehr.chips;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Implementation of {@link ChipCatalog} whose rows are a list of chips, so a list of
+ * chips can be used anywhere a catalog can (like with a {@link ChipSearchIndex}).
+ *
+ * The list is copied, so changing it afterwards doesn't change this. Chips with a
+ * number id can be found by their id; the ids are mapped the first time they're needed.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ListChipCatalog implements ChipCatalog, ChipCatalog.IdIndex {
+    private final List<Chip> mChips;
+    private final Map<Chip, Integer> mRows;
+    /* Rows of the chips with a number id, created when first needed */
+    private volatile Map<Long, Integer> mRowsById;
+
+
+    public ListChipCatalog(@NonNull List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        mChips = new ArrayList<>(chips);
+        mRows = new HashMap<>(mChips.size() * 4 / 3 + 1);
+        for (int row = 0; row < mChips.size(); row++) {
+            // Keep the first row of a chip that's in the list more than once
+            final Chip chip = mChips.get(row);
+            if (!mRows.containsKey(chip)) {
+                mRows.put(chip, row);
+            }
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return mChips.size();
+    }
+
+    @NonNull
+    @Override
+    public Chip getChip(int row) {
+        return mChips.get(row);
+    }
+
+    @Override
+    public int indexOf(@NonNull Chip chip) {
+        final Integer row = mRows.get(chip);
+        return row != null ? row : -1;
+    }
+
+    @Override
+    public int indexOfId(long id) {
+        Map<Long, Integer> rowsById = mRowsById;
+        if (rowsById == null) {
+            // Only happens the first time a chip is found by its id
+            rowsById = new HashMap<>(mChips.size() * 4 / 3 + 1);
+            for (int row = mChips.size() - 1; row >= 0; row--) {
+                final Object chipId = mChips.get(row).getId();
+                if (chipId instanceof Long || chipId instanceof Integer
+                        || chipId instanceof Short || chipId instanceof Byte) {
+                    rowsById.put(((Number)chipId).longValue(), row);
+                }
+            }
+            mRowsById = rowsById;
+        }
+        final Integer row = rowsById.get(id);
+        return row != null ? row : -1;
+    }
+
+    @NonNull
+    @Override
+    public CharSequence getTitle(int row) {
+        return mChips.get(row).getTitle();
+    }
+
+    @Nullable
+    @Override
+    public CharSequence getSubtitle(int row) {
+        return mChips.get(row).getSubtitle();
+    }
+
+    @Override
+    public boolean matches(int row, String pattern) {
+        final Chip chip = mChips.get(row);
+        return Utils.matchesFilter(chip.getTitle(), chip.getSubtitle(), pattern);
+    }
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -13,10 +14,17 @@ import java.util.Set;
  * Subclass of {@link ObservableChipDataSource} that stores chips using
  * an {@link ArrayList}.
  *
+ * Changes to the original chips are guarded by a lock, so they can be searched
+ * on the filtering thread while chips are still being added on the main thread.
+ *
  * @author Tyler Suehr
  * @version 1.0
  */
-public class ListChipDataSource extends ObservableChipDataSource {
+public class ListChipDataSource extends ObservableChipDataSource
+        implements SearchableChipDataSource, BulkChipDataSource {
+    /* Guards changes to the original chips, which are searched on another thread */
+    private final Object mLock = new Object();
+
     /* Aggregation of all the original chips */
     @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
     Set<Chip> mOriginal;
@@ -73,6 +81,23 @@ public class ListChipDataSource extends ObservableChipDataSource {
         return getSelectedChips().get(position);
     }
 
+    @Override
+    public List<Chip> search(String pattern) {
+        // Copy the original chips, so they can be matched without holding the lock
+        final Chip[] original;
+        synchronized (mLock) {
+            original = mOriginal.toArray(new Chip[mOriginal.size()]);
+        }
+
+        final List<Chip> matches = new ArrayList<>();
+        for (Chip chip : original) {
+            if (Utils.matchesFilter(chip.getTitle(), chip.getSubtitle(), pattern)) {
+                matches.add(chip);
+            }
+        }
+        return matches;
+    }
+
     @Override
     public void setFilterableChips(List<? extends Chip> chips) {
         if (chips == null) {
@@ -80,10 +105,12 @@ public class ListChipDataSource extends ObservableChipDataSource {
         }
 
         // Only copy the data from our chips into the original and filtered lists
-        for (Chip chip : chips) {
-            chip.setFilterable(true);
-            mOriginal.add(chip);
-            mFiltered.add(chip);
+        synchronized (mLock) {
+            for (Chip chip : chips) {
+                chip.setFilterable(true);
+                mOriginal.add(chip);
+                mFiltered.add(chip);
+            }
         }
 
         // Tell our observers!
@@ -96,7 +123,9 @@ public class ListChipDataSource extends ObservableChipDataSource {
             throw new NullPointerException("Chip cannot be null!");
         }
         chip.setFilterable(true);
-        mOriginal.add(chip);
+        synchronized (mLock) {
+            mOriginal.add(chip);
+        }
         mFiltered.add(chip);
 
         notifyDataSourceChanged();
@@ -118,16 +147,21 @@ public class ListChipDataSource extends ObservableChipDataSource {
             throw new NullPointerException("Chip cannot be null!");
         }
 
-        mSelected.remove(chip);
+        final boolean removed = mSelected.remove(chip);
         notifyDataSourceChanged();
+        if (removed) {
+            notifyChipUnselected(chip);
+        }
     }
 
     @Override
     public void setSelectedChips(List<? extends Chip> chips)
     {
-        mOriginal.clear();
+        synchronized (mLock) {
+            mOriginal.clear();
+            mOriginal.addAll(chips);
+        }
         mSelected.clear();
-        mOriginal.addAll(chips);
         mSelected.addAll(chips);
         notifyDataSourceChanged();
     }
@@ -142,7 +176,9 @@ public class ListChipDataSource extends ObservableChipDataSource {
         if (chip.isFilterable()) {
             // Check if chip is actually in the filtered list
             if (mFiltered.contains(chip)) {
-                mOriginal.remove(chip);
+                synchronized (mLock) {
+                    mOriginal.remove(chip);
+                }
                 mFiltered.remove(chip);
                 mSelected.add(chip);
             } else {
@@ -167,7 +203,9 @@ public class ListChipDataSource extends ObservableChipDataSource {
         // Check if chip is filterable
         if (foundChip.isFilterable()) {
             // Since the child isn't null, we know it's in the filtered list
-            mOriginal.remove(foundChip);
+            synchronized (mLock) {
+                mOriginal.remove(foundChip);
+            }
             mFiltered.remove(foundChip);
             mSelected.add(foundChip);
         } else {
@@ -179,6 +217,27 @@ public class ListChipDataSource extends ObservableChipDataSource {
         notifyChipSelected(foundChip);
     }
 
+    @Override
+    public void takeChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+
+        // Chips that are already selected are skipped
+        final Set<Chip> taken = new LinkedHashSet<>(chips);
+        taken.removeAll(mSelected);
+        synchronized (mLock) {
+            mOriginal.removeAll(taken);
+        }
+        mFiltered.removeAll(taken);
+        mSelected.addAll(taken);
+
+        notifyDataSourceChanged();
+        for (Chip chip : taken) {
+            notifyChipSelected(chip);
+        }
+    }
+
     @Override
     public void replaceChip(Chip chip) {
         if (chip == null) {
@@ -192,7 +251,9 @@ public class ListChipDataSource extends ObservableChipDataSource {
             // Check if the chip is filterable
             if (chip.isFilterable()) {
                 mFiltered.add(chip);
-                mOriginal.add(chip);
+                synchronized (mLock) {
+                    mOriginal.add(chip);
+                }
             }
 
             notifyDataSourceChanged();
@@ -216,7 +277,9 @@ public class ListChipDataSource extends ObservableChipDataSource {
         // Check if the chip is filterable
         if (foundChip.isFilterable()) {
             mFiltered.add(foundChip);
-            mOriginal.add(foundChip);
+            synchronized (mLock) {
+                mOriginal.add(foundChip);
+            }
         }
 
         notifyDataSourceChanged();
@@ -225,7 +288,9 @@ public class ListChipDataSource extends ObservableChipDataSource {
 
     @Override
     public void clearFilteredChips() {
-        mOriginal.clear();
+        synchronized (mLock) {
+            mOriginal.clear();
+        }
         mFiltered.clear();
         notifyDataSourceChanged();
     }
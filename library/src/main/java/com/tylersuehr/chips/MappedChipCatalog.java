@@ -0,0 +1,289 @@
+package com.tylersuehr.chips;
+import android.content.res.AssetFileDescriptor;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Implementation of {@link ChipCatalog} that reads a catalog file, written by
+ * {@link ChipCatalogWriter}, that's mapped into memory.
+ *
+ * Nothing is read from the file up front; rows are read straight from the mapped file
+ * when they're displayed or matched, and the OS pages the file in as needed. So even a
+ * catalog with millions of rows opens instantly, and doesn't take up the Java heap.
+ *
+ * Everything is read with absolute reads of the mapped buffers, so this can be used
+ * from any thread.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public final class MappedChipCatalog
+        implements ChipCatalog, ChipCatalog.IdIndex, ChipCatalog.Versioned {
+    private final int mCount;
+    /* Version of the file it was mapped from, or 0 if unknown */
+    private final long mVersion;
+    private final LongBuffer mIds;
+    private final IntBuffer mStarts;
+    private final IntBuffer mRowsById;
+    private final IntBuffer mSubtitleFlags;
+    private final CharBuffer mText;
+
+    /* Reusable views of the text, used when matching rows */
+    private final ThreadLocal<TextWindow> mWindows = new ThreadLocal<TextWindow>() {
+        @Override
+        protected TextWindow initialValue() {
+            return new TextWindow();
+        }
+    };
+
+
+    private MappedChipCatalog(ByteBuffer buffer, long version) throws IOException {
+        mVersion = version;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < ChipCatalogWriter.HEADER_SIZE
+                || buffer.getInt(0) != ChipCatalogWriter.MAGIC) {
+            throw new IOException("Not a chip catalog!");
+        }
+        if (buffer.getInt(4) != ChipCatalogWriter.VERSION) {
+            throw new IOException("Unsupported chip catalog version: " + buffer.getInt(4));
+        }
+
+        mCount = buffer.getInt(8);
+        final int textLength = buffer.getInt(12);
+        final int startsLength = (mCount << 1) + 1;
+        final int flagsLength = ChipCatalogWriter.flagsLength(mCount);
+        final long expectedSize = ChipCatalogWriter.HEADER_SIZE + 8L * mCount
+                + 4L * (startsLength + mCount + flagsLength) + 2L * textLength;
+        if (mCount < 0 || textLength < 0 || buffer.remaining() < expectedSize) {
+            throw new IOException("Chip catalog is truncated!");
+        }
+
+        int offset = ChipCatalogWriter.HEADER_SIZE;
+        mIds = section(buffer, offset).asLongBuffer();
+        offset += 8 * mCount;
+        mStarts = section(buffer, offset).asIntBuffer();
+        offset += 4 * startsLength;
+        mRowsById = section(buffer, offset).asIntBuffer();
+        offset += 4 * mCount;
+        mSubtitleFlags = section(buffer, offset).asIntBuffer();
+        offset += 4 * flagsLength;
+        mText = section(buffer, offset).asCharBuffer();
+    }
+
+    /**
+     * Maps the given catalog file. Its version is taken from its path, size, and when it
+     * was last modified, so it changes whenever the file is written again.
+     *
+     * @param file Catalog {@link File}
+     * @return {@link MappedChipCatalog}
+     * @throws IOException If the file couldn't be mapped, or isn't a catalog
+     */
+    public static MappedChipCatalog open(@NonNull File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final long length = file.length();
+            final long version = (file.getAbsolutePath().hashCode() * 31L + length)
+                    * 31L + file.lastModified();
+            return open(in.getChannel(), 0, length, version == 0 ? 1 : version);
+        } finally {
+            // The mapping stays valid after the channel is closed
+            in.close();
+        }
+    }
+
+    /**
+     * Maps the given catalog asset. The asset must be stored uncompressed in the APK,
+     * like by adding its extension to {@code aaptOptions.noCompress}. Its version isn't
+     * known, so give one to {@link ChipSearchIndexCache#load(ChipCatalog, long)} (like
+     * the app's version code) to avoid hashing it.
+     *
+     * @param asset {@link AssetFileDescriptor} of the catalog
+     * @return {@link MappedChipCatalog}
+     * @throws IOException If the asset couldn't be mapped, or isn't a catalog
+     */
+    public static MappedChipCatalog open(@NonNull AssetFileDescriptor asset) throws IOException {
+        final FileInputStream in = asset.createInputStream();
+        try {
+            return open(in.getChannel(), asset.getStartOffset(), asset.getLength());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Maps a catalog from the given region of a file.
+     *
+     * @param channel {@link FileChannel} of the file
+     * @param offset Offset of the catalog in the file
+     * @param length Length of the catalog in bytes
+     * @return {@link MappedChipCatalog}
+     * @throws IOException If the region couldn't be mapped, or isn't a catalog
+     */
+    public static MappedChipCatalog open(@NonNull FileChannel channel, long offset, long length)
+            throws IOException {
+        return open(channel, offset, length, 0);
+    }
+
+    private static MappedChipCatalog open(FileChannel channel, long offset, long length,
+                                          long version) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Chip catalog is too large to map!");
+        }
+        return new MappedChipCatalog(channel.map(FileChannel.MapMode.READ_ONLY, offset, length), version);
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    @NonNull
+    @Override
+    public Chip getChip(int row) {
+        checkRow(row);
+        return new CatalogChip(this, row, mIds.get(row));
+    }
+
+    @Override
+    public int indexOf(@NonNull Chip chip) {
+        final int row = CatalogChip.rowIn(chip, this);
+        if (row != -1) {
+            return row;
+        }
+        final Object id = chip.getId();
+        return id instanceof Long ? indexOfId((Long)id) : -1;
+    }
+
+    @Override
+    public int indexOfId(long id) {
+        int low = 0;
+        int high = mCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int midRow = mRowsById.get(mid);
+            final long midId = mIds.get(midRow);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return midRow;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long getVersion() {
+        return mVersion;
+    }
+
+    public long getId(int row) {
+        checkRow(row);
+        return mIds.get(row);
+    }
+
+    @NonNull
+    @Override
+    public CharSequence getTitle(int row) {
+        checkRow(row);
+        return readText(mStarts.get(row << 1), mStarts.get((row << 1) + 1));
+    }
+
+    @Nullable
+    @Override
+    public CharSequence getSubtitle(int row) {
+        checkRow(row);
+        return hasSubtitle(row)
+                ? readText(mStarts.get((row << 1) + 1), mStarts.get((row << 1) + 2))
+                : null;
+    }
+
+    @Override
+    public boolean matches(int row, String pattern) {
+        checkRow(row);
+        final TextWindow window = mWindows.get();
+        final int titleStart = mStarts.get(row << 1);
+        final int subtitleStart = mStarts.get((row << 1) + 1);
+        window.set(titleStart, subtitleStart - titleStart);
+        if (Utils.containsIgnoreCase(window, pattern, false)) {
+            return true;
+        }
+        if (hasSubtitle(row)) {
+            window.set(subtitleStart, mStarts.get((row << 1) + 2) - subtitleStart);
+            return Utils.containsIgnoreCase(window, pattern, true);
+        }
+        return false;
+    }
+
+    private boolean hasSubtitle(int row) {
+        return (mSubtitleFlags.get(row >>> 5) & (1 << (row & 31))) != 0;
+    }
+
+    private String readText(int start, int end) {
+        final char[] text = new char[end - start];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = mText.get(start + i);
+        }
+        return new String(text);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= mCount) {
+            throw new IndexOutOfBoundsException("Row " + row + ", count " + mCount);
+        }
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, int offset) {
+        final ByteBuffer section = buffer.duplicate();
+        section.position(offset);
+        return section.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    /**
+     * Implementation of {@link CharSequence} that's a view of a range of the mapped
+     * text, so rows can be matched without creating strings.
+     */
+    private final class TextWindow implements CharSequence {
+        private int mStart;
+        private int mLength;
+
+        void set(int start, int length) {
+            mStart = start;
+            mLength = length;
+        }
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return mText.get(mStart + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return readText(mStart + start, mStart + end);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return readText(mStart, mStart + mLength);
+        }
+    }
+}
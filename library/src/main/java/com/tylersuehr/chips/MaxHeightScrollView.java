@@ -36,6 +36,6 @@ public class MaxHeightScrollView extends NestedScrollView {
 
     public void setMaxHeight(int height) {
         this.mMaxHeight = height;
-        invalidate();
+        requestLayout();
     }
 }
\ No newline at end of file
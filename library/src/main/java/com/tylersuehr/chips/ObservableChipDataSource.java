@@ -1,14 +1,32 @@
 package com.tylersuehr.chips;
+import android.view.Choreographer;
 import androidx.annotation.VisibleForTesting;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * Copyright © 2017 Tyler Suehr
  *
  * Implementation of {@link ChipDataSource} to provide the basic functionality for
- * observers ONLY. It manages the observers in a {@link java.util.LinkedList}, and
- * includes convenience methods for notifying them too.
+ * observers ONLY. It manages the observers in copy-on-write arrays, and includes
+ * convenience methods for notifying them too.
+ *
+ * Observers can be added or removed from any thread, and at any time (even from
+ * inside of an observer callback). Each registration swaps in a new array, so
+ * notifying observers is just a walk over the current array with no lock held.
+ *
+ * Notifications raised while observers are already being notified (an observer
+ * that changes this data source from its callback) are queued, and delivered in
+ * order once the current notification has reached every observer. Notifications
+ * are expected to be raised from one thread at a time.
+ *
+ * Optionally, notifications can be coalesced until the next frame (see
+ * {@link #setFrameCoalescingEnabled(boolean)}), so that a burst of changes only
+ * notifies change observers once per frame. Data sources that keep their changes to
+ * themselves until then publish them along with that notification (see
+ * {@link #publishChanges()}).
+ *
+ * Optionally, chips selected and unselected are recorded in a bounded log (see
+ * {@link #setUndoLimit(int)}), so that those changes can be undone and redone (see
+ * {@link #undo()} and {@link #redo()}).
  *
  * Note: when notifying observers, it's a good idea to notify change observers first
  * because that will update the internal components before any other observers.
@@ -17,13 +35,45 @@ import java.util.List;
  * @version 1.0
  */
 public abstract class ObservableChipDataSource implements ChipDataSource {
+    private static final SelectionObserver[] NO_SELECTION_OBSERVERS = new SelectionObserver[0];
+    private static final ChangeObserver[] NO_CHANGE_OBSERVERS = new ChangeObserver[0];
+
+    /* Types of notifications that can be queued */
+    private static final int CHANGED = 0;
+    private static final int SELECTED = 1;
+    private static final int UNSELECTED = 2;
+    /* Changed parts of the chip are kept in the bits above the type */
+    private static final int CHIP_CHANGED = 3;
+    private static final int TYPE_MASK = 3;
+
+    /* Guards copy-on-write updates to the observer arrays */
+    private final Object mObserverLock = new Object();
+
     /* Aggregation of observers to watch changes to chip selection */
     @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
-    List<SelectionObserver> mSelectionObservers;
+    volatile SelectionObserver[] mSelectionObservers = NO_SELECTION_OBSERVERS;
 
     /* Aggregation of observers to watch changes to data source */
     @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
-    List<ChangeObserver> mChangeObservers;
+    volatile ChangeObserver[] mChangeObservers = NO_CHANGE_OBSERVERS;
+
+    /* Notifications raised during another notification */
+    private final NotificationQueue mPending = new NotificationQueue();
+    /* True while observers are being notified */
+    private boolean mDispatching;
+
+    /* Selection notifications waiting for the next frame */
+    private final NotificationQueue mFramePending = new NotificationQueue();
+    /* True if notifications are coalesced until the next frame */
+    private boolean mFrameCoalescing;
+    /* True if a change notification is waiting for the next frame */
+    private boolean mFrameChanged;
+    /* True if the frame callback has been posted */
+    private boolean mFramePosted;
+    private Choreographer.FrameCallback mFrameCallback;
+
+    /* Log of selection changes, to undo and redo them */
+    private final ChipUndoLog mUndoLog = new ChipUndoLog();
 
 
     @Override
@@ -31,10 +81,9 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
         if (observer == null) {
             throw new NullPointerException("Observer cannot be null!");
         }
-        if (mSelectionObservers == null) {
-            mSelectionObservers = new LinkedList<>();
+        synchronized (mObserverLock) {
+            mSelectionObservers = Utils.arrayAppend(mSelectionObservers, observer);
         }
-        mSelectionObservers.add(observer);
     }
 
     @Override
@@ -42,16 +91,15 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
         if (observer == null) {
             throw new NullPointerException("Observer cannot be null!");
         }
-        if (mSelectionObservers != null) {
-            mSelectionObservers.remove(observer);
+        synchronized (mObserverLock) {
+            mSelectionObservers = Utils.arrayRemove(mSelectionObservers, observer);
         }
     }
 
     @Override
     public final void removeAllSelectionObservers() {
-        if (mSelectionObservers != null) {
-            mSelectionObservers.clear();
-            mSelectionObservers = null;
+        synchronized (mObserverLock) {
+            mSelectionObservers = NO_SELECTION_OBSERVERS;
         }
     }
 
@@ -60,10 +108,9 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
         if (observer == null) {
             throw new NullPointerException("Observer cannot be null!");
         }
-        if (mChangeObservers == null) {
-            mChangeObservers = new LinkedList<>();
+        synchronized (mObserverLock) {
+            mChangeObservers = Utils.arrayAppend(mChangeObservers, observer);
         }
-        mChangeObservers.add(observer);
     }
 
     @Override
@@ -71,45 +118,124 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
         if (observer == null) {
             throw new NullPointerException("Observer cannot be null!");
         }
-        if (mChangeObservers != null) {
-            mChangeObservers.remove(observer);
+        synchronized (mObserverLock) {
+            mChangeObservers = Utils.arrayRemove(mChangeObservers, observer);
         }
     }
 
     @Override
     public final void removeAllChangedObservers() {
-        if (mChangeObservers != null) {
-            mChangeObservers.clear();
-            mChangeObservers = null;
+        synchronized (mObserverLock) {
+            mChangeObservers = NO_CHANGE_OBSERVERS;
         }
     }
 
     @Override
     public final void cloneObservers(ChipDataSource to) {
-        if (mSelectionObservers != null) {
-            for (SelectionObserver ob : mSelectionObservers) {
-                to.addSelectionObserver(ob);
-            }
+        for (SelectionObserver ob : mSelectionObservers) {
+            to.addSelectionObserver(ob);
+        }
+        for (ChangeObserver ob : mChangeObservers) {
+            to.addChangedObserver(ob);
         }
-        if (mChangeObservers != null) {
-            for (ChangeObserver ob : mChangeObservers) {
-                to.addChangedObserver(ob);
+    }
+
+    /**
+     * Sets whether notifications should be coalesced until the next frame.
+     *
+     * When enabled, any number of changes made within one frame will only notify
+     * change observers once, right before the next frame is laid out. Selection
+     * observers are still notified about every chip, in order, after that.
+     *
+     * Notifications are flushed by a frame callback, which runs before the frame's
+     * layout; so an adapter observing this is notified before its recycler lays out
+     * the changes, and is laid out once per frame however many changes were made.
+     *
+     * Note: this uses {@link Choreographer}, so it must be used on the main thread.
+     *
+     * @param enabled True if notifications should be coalesced
+     */
+    public final void setFrameCoalescingEnabled(boolean enabled) {
+        if (mFrameCoalescing == enabled) { return; }
+        mFrameCoalescing = enabled;
+        if (!enabled) {
+            // Deliver anything still waiting for a frame right now
+            if (mFramePosted) {
+                Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+                mFramePosted = false;
             }
+            flushFrame();
         }
     }
 
+    public final boolean isFrameCoalescingEnabled() {
+        return mFrameCoalescing;
+    }
+
+    /**
+     * Called right before observers are notified about the changes held until the
+     * next frame. Data sources whose chips shouldn't change before observers are
+     * notified (like ones read from other threads) can keep their changes to themselves
+     * while notifications are coalesced, and publish them here.
+     */
+    protected void publishChanges() {}
+
+    /**
+     * Undoes the last selection change, like a chip removed by backspace, by
+     * selecting or unselecting its chips again.
+     *
+     * Only chips selected and unselected are recorded, and only once an undo limit is
+     * set; changes the data source doesn't notify selection observers about (like
+     * setting the selected chips) aren't.
+     *
+     * @return True if a change was undone
+     */
+    public final boolean undo() {
+        return mUndoLog.undo(this);
+    }
+
+    /**
+     * Redoes the last selection change that was undone.
+     * @return True if a change was redone
+     */
+    public final boolean redo() {
+        return mUndoLog.redo(this);
+    }
+
+    public final boolean canUndo() {
+        return mUndoLog.canUndo();
+    }
+
+    public final boolean canRedo() {
+        return mUndoLog.canRedo();
+    }
+
+    /**
+     * Sets the maximum number of changes kept to undo, where a change is everything
+     * selected and unselected at once (like clearing the selected chips). The oldest
+     * changes are forgotten once there are more. Changes aren't recorded at all while
+     * the limit is 0, which it is by default.
+     *
+     * @param limit Maximum number of changes, or 0 to not record them
+     */
+    public final void setUndoLimit(int limit) {
+        mUndoLog.setLimit(limit);
+    }
+
+    /**
+     * Forgets every change that can currently be undone or redone.
+     */
+    public final void clearUndoHistory() {
+        mUndoLog.clear();
+    }
+
     /**
      * Notifies {@link #mChangeObservers} that a change to the data
      * source happened.
      */
     protected final void notifyDataSourceChanged() {
-        if (mChangeObservers != null) {
-            synchronized (this) {
-                for (ChangeObserver ob : mChangeObservers) {
-                    ob.onChipDataSourceChanged();
-                }
-            }
-        }
+        mUndoLog.startGroup();
+        dispatch(CHANGED, null);
     }
 
     /**
@@ -118,13 +244,8 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
      * @param chip {@link Chip} selected
      */
     protected final void notifyChipSelected(Chip chip) {
-        if (mSelectionObservers != null) {
-            synchronized (this) {
-                for (SelectionObserver ob : mSelectionObservers) {
-                    ob.onChipSelected(chip);
-                }
-            }
-        }
+        mUndoLog.recordSelected(chip);
+        dispatch(SELECTED, chip);
     }
 
     /**
@@ -133,12 +254,217 @@ public abstract class ObservableChipDataSource implements ChipDataSource {
      * @param chip {@link Chip} unselected
      */
     protected final void notifyChipUnselected(Chip chip) {
-        if (mSelectionObservers != null) {
-            synchronized (this) {
+        mUndoLog.recordUnselected(chip);
+        dispatch(UNSELECTED, chip);
+    }
+
+    /**
+     * Notifies change observers that some parts of the given chip changed (like its
+     * avatar, once it has been loaded), so they can update just those parts of it.
+     * Observers that don't implement {@link ChipChangeObserver} are notified about
+     * it as any other change.
+     *
+     * @param chip {@link Chip} that changed
+     * @param changes Parts that changed, like {@link #CHANGE_AVATAR}
+     */
+    public final void notifyChipChanged(Chip chip, int changes) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        dispatch(CHIP_CHANGED | (changes << 2), chip);
+    }
+
+    /**
+     * Delivers the given notification to its observers, unless observers are
+     * already being notified; in which case it's queued and delivered by the
+     * notification that is already in progress.
+     *
+     * @param type Type of notification
+     * @param chip {@link Chip} the notification is about, if any
+     */
+    private void dispatch(int type, Chip chip) {
+        if (mFrameCoalescing) {
+            deferToFrame(type, chip);
+            return;
+        }
+        if (mDispatching) {
+            mPending.add(type, chip);
+            return;
+        }
+
+        mDispatching = true;
+        try {
+            deliver(type, chip);
+            drainPending();
+        } finally {
+            // If an observer threw, what it queued is dropped with it
+            mPending.clear();
+            mDispatching = false;
+        }
+    }
+
+    private void deliver(int type, Chip chip) {
+        switch (type & TYPE_MASK) {
+            case CHANGED:
+                for (ChangeObserver ob : mChangeObservers) {
+                    ob.onChipDataSourceChanged();
+                }
+                break;
+            case SELECTED:
+                for (SelectionObserver ob : mSelectionObservers) {
+                    ob.onChipSelected(chip);
+                }
+                break;
+            case UNSELECTED:
                 for (SelectionObserver ob : mSelectionObservers) {
                     ob.onChipDeselected(chip);
                 }
+                break;
+            case CHIP_CHANGED:
+                for (ChangeObserver ob : mChangeObservers) {
+                    if (ob instanceof ChipChangeObserver) {
+                        ((ChipChangeObserver)ob).onChipChanged(chip, type >>> 2);
+                    } else {
+                        ob.onChipDataSourceChanged();
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Holds the given notification until the next frame. All change notifications
+     * are merged into one, and selection notifications are kept in order.
+     *
+     * @param type Type of notification
+     * @param chip {@link Chip} the notification is about, if any
+     */
+    private void deferToFrame(int type, Chip chip) {
+        if (type == CHANGED) {
+            mFrameChanged = true;
+        } else {
+            mFramePending.add(type, chip);
+        }
+
+        if (!mFramePosted) {
+            if (mFrameCallback == null) {
+                mFrameCallback = new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        mFramePosted = false;
+                        flushFrame();
+                    }
+                };
+            }
+            mFramePosted = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    /**
+     * Notifies observers about everything held until the next frame. Changes made
+     * by observers while this flushes are held until the frame after.
+     */
+    private void flushFrame() {
+        final boolean changed = mFrameChanged;
+        final int count = mFramePending.size();
+        mFrameChanged = false;
+        if (!changed && count == 0) { return; }
+
+        // Observers are about to be notified, so they can see the changes now
+        publishChanges();
+
+        if (mDispatching) {
+            // Let the notification in progress deliver them
+            if (changed) {
+                mPending.add(CHANGED, null);
             }
+            for (int i = 0; i < count; i++) {
+                final int type = mFramePending.peekType();
+                mPending.add(type, mFramePending.poll());
+            }
+            return;
+        }
+
+        mDispatching = true;
+        try {
+            if (changed) {
+                deliver(CHANGED, null);
+            }
+            for (int i = 0; i < count; i++) {
+                final int type = mFramePending.peekType();
+                deliver(type, mFramePending.poll());
+            }
+            drainPending();
+        } finally {
+            mPending.clear();
+            mDispatching = false;
+        }
+    }
+
+    private void drainPending() {
+        while (!mPending.isEmpty()) {
+            final int type = mPending.peekType();
+            deliver(type, mPending.poll());
+        }
+    }
+
+
+    /**
+     * Nested class that's a growable ring buffer of notifications.
+     */
+    private static final class NotificationQueue {
+        private int[] mTypes = new int[4];
+        private Chip[] mChips = new Chip[4];
+        private int mHead;
+        private int mSize;
+
+        boolean isEmpty() {
+            return mSize == 0;
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        int peekType() {
+            return mTypes[mHead];
+        }
+
+        Chip poll() {
+            final Chip chip = mChips[mHead];
+            mChips[mHead] = null;
+            mHead = (mHead + 1) % mTypes.length;
+            mSize--;
+            return chip;
+        }
+
+        void clear() {
+            while (mSize > 0) {
+                poll();
+            }
+        }
+
+        void add(int type, Chip chip) {
+            if (mSize == mTypes.length) {
+                // Unroll the ring buffer into arrays twice the size
+                final int capacity = mTypes.length << 1;
+                final int[] types = new int[capacity];
+                final Chip[] chips = new Chip[capacity];
+                for (int i = 0; i < mSize; i++) {
+                    final int index = (mHead + i) % mTypes.length;
+                    types[i] = mTypes[index];
+                    chips[i] = mChips[index];
+                }
+                mTypes = types;
+                mChips = chips;
+                mHead = 0;
+            }
+
+            final int tail = (mHead + mSize) % mTypes.length;
+            mTypes[tail] = type;
+            mChips[tail] = chip;
+            mSize++;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,347 @@
+package com.tylersuehr.chips;
+import androidx.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Subclass of {@link ObservableChipDataSource} that stores chips using
+ * {@link PersistentChipSet}.
+ *
+ * Every change creates a new {@link Snapshot} of all the chips, which shares almost
+ * all of its structure with the previous one, so a change only costs O(log n) instead
+ * of copying the chips. Snapshots never change, so they can be handed to background
+ * threads (like the filtering thread, or a diff) and kept around as old versions,
+ * without copying or locking.
+ *
+ * The lists returned by this data source are views of the current snapshot, so they
+ * aren't copied either. Chips are kept in the order they were added.
+ *
+ * This can coalesce notifications until the next frame; while it does, the current
+ * snapshot is the one observers were last notified about, and changes made since then
+ * are only published with the next notification.
+ *
+ * Note: changes must be made on the main thread; snapshots can be read from any thread.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class PersistentChipDataSource extends ObservableChipDataSource
+        implements SearchableChipDataSource, BulkChipDataSource {
+    /* Current snapshot, read by the filtering thread */
+    private volatile Snapshot mSnapshot = Snapshot.EMPTY;
+    /* Latest snapshot, which is ahead of the current one while it isn't published */
+    private Snapshot mLatest = Snapshot.EMPTY;
+
+
+    /**
+     * Gets the current snapshot of all the chips.
+     * @return {@link Snapshot}
+     */
+    public Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    @Override
+    public List<Chip> getSelectedChips() {
+        return mSnapshot.selected.asList();
+    }
+
+    @Override
+    public List<Chip> getFilteredChips() {
+        return mSnapshot.filtered.asList();
+    }
+
+    @Override
+    public List<Chip> getOriginalChips() {
+        return mSnapshot.original.asList();
+    }
+
+    @Override
+    public Chip getFilteredChip(int position) {
+        return mSnapshot.filtered.get(position);
+    }
+
+    @Override
+    public Chip getSelectedChip(int position) {
+        return mSnapshot.selected.get(position);
+    }
+
+    @Override
+    public List<Chip> search(String pattern) {
+        // The snapshot never changes, so it can be matched as-is
+        final List<Chip> matches = new ArrayList<>();
+        for (Chip chip : mSnapshot.original) {
+            if (Utils.matchesFilter(chip.getTitle(), chip.getSubtitle(), pattern)) {
+                matches.add(chip);
+            }
+        }
+        return matches;
+    }
+
+    @Override
+    protected void publishChanges() {
+        mSnapshot = mLatest;
+    }
+
+    @Override
+    public void setFilterableChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        for (Chip chip : chips) {
+            chip.setFilterable(true);
+        }
+        final Snapshot current = mLatest;
+        commit(current.next(current.original.plusAll(chips),
+                current.filtered.plusAll(chips), current.selected));
+        notifyDataSourceChanged();
+    }
+
+    @Override
+    public void addFilteredChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        chip.setFilterable(true);
+        final Snapshot current = mLatest;
+        commit(current.next(current.original.plus(chip),
+                current.filtered.plus(chip), current.selected));
+        notifyDataSourceChanged();
+    }
+
+    @Override
+    public void addSelectedChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        final Snapshot current = mLatest;
+        commit(current.next(current.original, current.filtered,
+                current.selected.plus(chip)));
+        notifyDataSourceChanged();
+        notifyChipSelected(chip);
+    }
+
+    @Override
+    public void removeSelectedChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        final Snapshot current = mLatest;
+        final PersistentChipSet selected = current.selected.minus(chip);
+        commit(current.next(current.original, current.filtered, selected));
+        notifyDataSourceChanged();
+        if (selected != current.selected) {
+            notifyChipUnselected(chip);
+        }
+    }
+
+    @Override
+    public void setSelectedChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        final PersistentChipSet set = PersistentChipSet.of(chips);
+        commit(mLatest.next(set, mLatest.filtered, set));
+        notifyDataSourceChanged();
+    }
+
+    @Override
+    public void takeChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        if (!chip.isFilterable()) {
+            throw new IllegalArgumentException("Cannot take a non-filterable chip!");
+        }
+        if (!mLatest.filtered.contains(chip)) {
+            throw new IllegalArgumentException("Chip is not in filtered chip list!");
+        }
+        take(chip);
+    }
+
+    @Override
+    public void takeChip(int position) {
+        final Chip foundChip = mSnapshot.filtered.get(position);
+        if (foundChip == null) {
+            throw new NullPointerException("Chip cannot be null; " +
+                    "not found in filtered chip list!");
+        }
+        take(foundChip);
+    }
+
+    @Override
+    public void takeChips(List<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+
+        // Chips that are already selected are skipped
+        final Snapshot current = mLatest;
+        final List<Chip> taken = new ArrayList<>(chips.size());
+        PersistentChipSet selected = current.selected;
+        for (Chip chip : chips) {
+            final PersistentChipSet next = selected.plus(chip);
+            if (next != selected) {
+                taken.add(chip);
+                selected = next;
+            }
+        }
+        commit(current.next(current.original.minusAll(taken),
+                current.filtered.minusAll(taken), selected));
+
+        notifyDataSourceChanged();
+        for (Chip chip : taken) {
+            notifyChipSelected(chip);
+        }
+    }
+
+    @Override
+    public void replaceChip(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        if (!mLatest.selected.contains(chip)) {
+            throw new IllegalArgumentException("Chip is not in selected chip list!");
+        }
+        replace(chip);
+    }
+
+    @Override
+    public void replaceChip(int position) {
+        final Chip foundChip = mSnapshot.selected.get(position);
+        if (foundChip == null) {
+            throw new NullPointerException("Chip cannot be null; not " +
+                    "found in selected chip list!");
+        }
+        replace(foundChip);
+    }
+
+    @Override
+    public void clearFilteredChips() {
+        commit(mLatest.next(PersistentChipSet.empty(),
+                PersistentChipSet.empty(), mLatest.selected));
+        notifyDataSourceChanged();
+    }
+
+    @Override
+    public void clearSelectedChips() {
+        // The old snapshot still has the cleared chips, to tell observers about
+        final Snapshot cleared = mLatest;
+        commit(cleared.next(cleared.original, cleared.filtered, PersistentChipSet.empty()));
+
+        notifyDataSourceChanged();
+        for (Chip chip : cleared.selected) {
+            notifyChipUnselected(chip);
+        }
+    }
+
+    @Override
+    public boolean existsInFiltered(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        return mLatest.filtered.contains(chip);
+    }
+
+    @Override
+    public boolean existsInSelected(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        return mLatest.selected.contains(chip);
+    }
+
+    @Override
+    public boolean existsInDataSource(Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        final Snapshot current = mLatest;
+        return (current.original.contains(chip)
+                || current.filtered.contains(chip)
+                || current.selected.contains(chip));
+    }
+
+    /* Makes the given snapshot the latest one, publishing it unless it's coalesced */
+    private void commit(Snapshot next) {
+        mLatest = next;
+        if (!isFrameCoalescingEnabled()) {
+            mSnapshot = next;
+        }
+    }
+
+    private void take(Chip chip) {
+        final Snapshot current = mLatest;
+        if (chip.isFilterable()) {
+            commit(current.next(current.original.minus(chip),
+                    current.filtered.minus(chip), current.selected.plus(chip)));
+        } else {
+            commit(current.next(current.original, current.filtered,
+                    current.selected.plus(chip)));
+        }
+        notifyDataSourceChanged();
+        notifyChipSelected(chip);
+    }
+
+    private void replace(Chip chip) {
+        final Snapshot current = mLatest;
+        if (chip.isFilterable()) {
+            commit(current.next(current.original.plus(chip),
+                    current.filtered.plus(chip), current.selected.minus(chip)));
+        } else {
+            commit(current.next(current.original, current.filtered,
+                    current.selected.minus(chip)));
+        }
+        notifyDataSourceChanged();
+        notifyChipUnselected(chip);
+    }
+
+
+    /**
+     * Nested class that holds an immutable version of all the chips.
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(PersistentChipSet.empty(),
+                PersistentChipSet.empty(), PersistentChipSet.empty(), 0);
+
+        final PersistentChipSet original;
+        final PersistentChipSet filtered;
+        final PersistentChipSet selected;
+        final long version;
+
+        private Snapshot(PersistentChipSet original, PersistentChipSet filtered,
+                         PersistentChipSet selected, long version) {
+            this.original = original;
+            this.filtered = filtered;
+            this.selected = selected;
+            this.version = version;
+        }
+
+        public PersistentChipSet getOriginalChips() {
+            return original;
+        }
+
+        public PersistentChipSet getFilteredChips() {
+            return filtered;
+        }
+
+        public PersistentChipSet getSelectedChips() {
+            return selected;
+        }
+
+        /**
+         * Gets the version of this snapshot, which is higher for every change.
+         * @return Version
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        Snapshot next(PersistentChipSet original, PersistentChipSet filtered,
+                      PersistentChipSet selected) {
+            return new Snapshot(original, filtered, selected, version + 1);
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package com.tylersuehr.chips;
+import androidx.annotation.NonNull;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Immutable set of chips, kept in the order they were added, where adding or removing
+ * a chip creates a new set that shares almost all of its structure with the old one.
+ *
+ * Chips are found using a hash trie (HAMT), which maps each chip to the sequence
+ * number it was added with. The order of the chips is kept in a tree, ordered by those
+ * sequence numbers, that knows the size of each subtree so a chip can be found by its
+ * position. Adding or removing a chip only copies the O(log n) nodes on its path in
+ * each of these, instead of copying the whole set.
+ *
+ * Since a set never changes, it can be read from any thread without locking, and old
+ * sets stay valid (and cheap) for as long as they're kept.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public final class PersistentChipSet implements Iterable<Chip> {
+    private static final PersistentChipSet EMPTY = new PersistentChipSet(null, null, 0);
+    /* Bits of the hash used by each level of the trie */
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private final TrieNode mTrie;
+    private final OrderNode mOrder;
+    /* Sequence number of the next chip added */
+    private final long mNextSeq;
+    private List<Chip> mList;
+
+
+    private PersistentChipSet(TrieNode trie, OrderNode order, long nextSeq) {
+        mTrie = trie;
+        mOrder = order;
+        mNextSeq = nextSeq;
+    }
+
+    public static PersistentChipSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a set of the given chips, in order.
+     *
+     * @param chips Iterable of {@link Chip}
+     * @return {@link PersistentChipSet}
+     */
+    public static PersistentChipSet of(@NonNull Iterable<? extends Chip> chips) {
+        return EMPTY.plusAll(chips);
+    }
+
+    public int size() {
+        return mOrder != null ? mOrder.size : 0;
+    }
+
+    public boolean isEmpty() {
+        return mOrder == null;
+    }
+
+    public boolean contains(@NonNull Chip chip) {
+        return find(chip) != null;
+    }
+
+    /**
+     * Creates a set with the given chip added to the end of this one.
+     *
+     * @param chip {@link Chip}
+     * @return {@link PersistentChipSet}, or this set if the chip is already in it
+     */
+    public PersistentChipSet plus(@NonNull Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        if (find(chip) != null) {
+            return this;
+        }
+        final Entry entry = new Entry(chip, mNextSeq);
+        return new PersistentChipSet(
+                mTrie == null ? put(TrieNode.EMPTY, entry, hash(chip), 0) : put(mTrie, entry, hash(chip), 0),
+                append(mOrder, entry),
+                mNextSeq + 1);
+    }
+
+    /**
+     * Creates a set with the given chips added to the end of this one, in order.
+     *
+     * @param chips Iterable of {@link Chip}
+     * @return {@link PersistentChipSet}
+     */
+    public PersistentChipSet plusAll(@NonNull Iterable<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        PersistentChipSet set = this;
+        for (Chip chip : chips) {
+            set = set.plus(chip);
+        }
+        return set;
+    }
+
+    /**
+     * Creates a set without the given chip.
+     *
+     * @param chip {@link Chip}
+     * @return {@link PersistentChipSet}, or this set if the chip isn't in it
+     */
+    public PersistentChipSet minus(@NonNull Chip chip) {
+        if (chip == null) {
+            throw new NullPointerException("Chip cannot be null!");
+        }
+        final Entry entry = find(chip);
+        if (entry == null) {
+            return this;
+        }
+        final OrderNode order = delete(mOrder, entry.seq);
+        return order == null ? EMPTY
+                : new PersistentChipSet(remove(mTrie, chip, hash(chip), 0), order, mNextSeq);
+    }
+
+    /**
+     * Creates a set without any of the given chips.
+     *
+     * @param chips Iterable of {@link Chip}
+     * @return {@link PersistentChipSet}
+     */
+    public PersistentChipSet minusAll(@NonNull Iterable<? extends Chip> chips) {
+        if (chips == null) {
+            throw new NullPointerException("Chips cannot be null!");
+        }
+        PersistentChipSet set = this;
+        for (Chip chip : chips) {
+            set = set.minus(chip);
+        }
+        return set;
+    }
+
+    /**
+     * Gets the chip at the given position, in O(log n).
+     *
+     * @param position Position of the chip
+     * @return {@link Chip}
+     */
+    public Chip get(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + size());
+        }
+        OrderNode node = mOrder;
+        while (true) {
+            final int leftSize = size(node.left);
+            if (position < leftSize) {
+                node = node.left;
+            } else if (position > leftSize) {
+                position -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.entry.chip;
+            }
+        }
+    }
+
+    /**
+     * Gets the position of the given chip, in O(log n).
+     *
+     * @param chip {@link Chip}
+     * @return Position of the chip, or -1 if it isn't in this set
+     */
+    public int indexOf(@NonNull Chip chip) {
+        final Entry entry = find(chip);
+        if (entry == null) {
+            return -1;
+        }
+        int position = 0;
+        OrderNode node = mOrder;
+        while (node.entry != entry) {
+            if (entry.seq < node.entry.seq) {
+                node = node.left;
+            } else {
+                position += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return position + size(node.left);
+    }
+
+    /**
+     * Gets an unmodifiable view of this set as a list. Nothing is copied; getting a
+     * chip by position is O(log n), and iterating is O(n).
+     *
+     * @return Unmodifiable list of {@link Chip}
+     */
+    public List<Chip> asList() {
+        if (mList == null) {
+            mList = new ListView();
+        }
+        return mList;
+    }
+
+    @NonNull
+    @Override
+    public Iterator<Chip> iterator() {
+        return new OrderIterator(mOrder);
+    }
+
+    private Entry find(Chip chip) {
+        if (mTrie == null) { return null; }
+        final int hash = hash(chip);
+        TrieNode node = mTrie;
+        for (int shift = 0; ; shift += BITS) {
+            if (shift >= 32) {
+                return node.findLinear(chip);
+            }
+            final int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            final Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (slot instanceof Entry) {
+                final Entry entry = (Entry)slot;
+                return entry.chip.equals(chip) ? entry : null;
+            }
+            node = (TrieNode)slot;
+        }
+    }
+
+    private static int hash(Chip chip) {
+        // Spread the bits, since chip ids are often small sequential numbers
+        final int hash = chip.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /* Adds an entry that isn't in the trie yet, copying the nodes on its path */
+    private static TrieNode put(TrieNode node, Entry entry, int hash, int shift) {
+        if (shift >= 32) {
+            return node.insertSlot(node.slots.length, 0, entry);
+        }
+        final int bit = 1 << ((hash >>> shift) & MASK);
+        final int index = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            return node.insertSlot(index, bit, entry);
+        }
+
+        final Object slot = node.slots[index];
+        if (slot instanceof Entry) {
+            final Entry existing = (Entry)slot;
+            return node.replaceSlot(index, pair(existing, hash(existing.chip), entry, hash, shift + BITS));
+        }
+        return node.replaceSlot(index, put((TrieNode)slot, entry, hash, shift + BITS));
+    }
+
+    /* Creates a node holding two entries whose hashes match up to the given shift */
+    private static TrieNode pair(Entry a, int hashA, Entry b, int hashB, int shift) {
+        if (shift >= 32) {
+            return new TrieNode(0, new Object[] { a, b });
+        }
+        final int indexA = (hashA >>> shift) & MASK;
+        final int indexB = (hashB >>> shift) & MASK;
+        if (indexA == indexB) {
+            return new TrieNode(1 << indexA, new Object[] { pair(a, hashA, b, hashB, shift + BITS) });
+        }
+        return new TrieNode((1 << indexA) | (1 << indexB),
+                indexA < indexB ? new Object[] { a, b } : new Object[] { b, a });
+    }
+
+    /* Removes a chip that's in the trie, copying the nodes on its path */
+    private static TrieNode remove(TrieNode node, Chip chip, int hash, int shift) {
+        if (shift >= 32) {
+            for (int i = 0; i < node.slots.length; i++) {
+                if (((Entry)node.slots[i]).chip.equals(chip)) {
+                    return node.slots.length == 1 ? null : node.removeSlot(i, 0);
+                }
+            }
+            return node;
+        }
+        final int bit = 1 << ((hash >>> shift) & MASK);
+        final int index = Integer.bitCount(node.bitmap & (bit - 1));
+        final Object slot = node.slots[index];
+        if (slot instanceof Entry) {
+            return node.bitmap == bit ? null : node.removeSlot(index, bit);
+        }
+
+        final TrieNode child = remove((TrieNode)slot, chip, hash, shift + BITS);
+        if (child == null) {
+            return node.bitmap == bit ? null : node.removeSlot(index, bit);
+        }
+        // Pull a lone entry up, so it's found without going through its own node
+        if (child.slots.length == 1 && child.slots[0] instanceof Entry) {
+            return node.replaceSlot(index, child.slots[0]);
+        }
+        return node.replaceSlot(index, child);
+    }
+
+    private static int size(OrderNode node) {
+        return node != null ? node.size : 0;
+    }
+
+    /* Adds an entry after every other one in the tree, copying the nodes on its path */
+    private static OrderNode append(OrderNode node, Entry entry) {
+        if (node == null) {
+            return new OrderNode(entry, null, null);
+        }
+        if (entry.priority > node.entry.priority) {
+            // Everything in the tree comes before the entry, so it all goes to its left
+            return new OrderNode(entry, node, null);
+        }
+        return new OrderNode(node.entry, node.left, append(node.right, entry));
+    }
+
+    /* Removes the entry with the given sequence number, copying the nodes on its path */
+    private static OrderNode delete(OrderNode node, long seq) {
+        if (seq < node.entry.seq) {
+            return new OrderNode(node.entry, delete(node.left, seq), node.right);
+        } else if (seq > node.entry.seq) {
+            return new OrderNode(node.entry, node.left, delete(node.right, seq));
+        }
+        return merge(node.left, node.right);
+    }
+
+    /* Merges two trees, where everything in the first comes before the second */
+    private static OrderNode merge(OrderNode first, OrderNode second) {
+        if (first == null) { return second; }
+        if (second == null) { return first; }
+        if (first.entry.priority > second.entry.priority) {
+            return new OrderNode(first.entry, first.left, merge(first.right, second));
+        }
+        return new OrderNode(second.entry, merge(first, second.left), second.right);
+    }
+
+
+    /**
+     * Nested class that stores a chip and the sequence number it was added with.
+     */
+    private static final class Entry {
+        final Chip chip;
+        final long seq;
+        /* Random-looking, but repeatable, priority that keeps the order tree balanced */
+        final int priority;
+
+        Entry(Chip chip, long seq) {
+            this.chip = chip;
+            this.seq = seq;
+            long mixed = seq * 0x9E3779B97F4A7C15L;
+            mixed ^= mixed >>> 29;
+            this.priority = (int)(mixed ^ (mixed >>> 32));
+        }
+    }
+
+
+    /**
+     * Nested class that's an immutable node of the hash trie. Each bit of the bitmap
+     * is a slot in use, holding an {@link Entry} or a child node, in order of the bits.
+     *
+     * Once every bit of the hash has been used, nodes have no bitmap and just hold
+     * the entries whose hashes collide.
+     */
+    private static final class TrieNode {
+        static final TrieNode EMPTY = new TrieNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] slots;
+
+        TrieNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        Entry findLinear(Chip chip) {
+            for (Object slot : slots) {
+                if (((Entry)slot).chip.equals(chip)) {
+                    return (Entry)slot;
+                }
+            }
+            return null;
+        }
+
+        TrieNode insertSlot(int index, int bit, Object slot) {
+            final Object[] copy = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            copy[index] = slot;
+            System.arraycopy(slots, index, copy, index + 1, slots.length - index);
+            return new TrieNode(bitmap | bit, copy);
+        }
+
+        TrieNode replaceSlot(int index, Object slot) {
+            final Object[] copy = slots.clone();
+            copy[index] = slot;
+            return new TrieNode(bitmap, copy);
+        }
+
+        TrieNode removeSlot(int index, int bit) {
+            final Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, index);
+            System.arraycopy(slots, index + 1, copy, index, copy.length - index);
+            return new TrieNode(bitmap & ~bit, copy);
+        }
+    }
+
+
+    /**
+     * Nested class that's an immutable node of the order tree (a treap), which knows
+     * the size of its subtree.
+     */
+    private static final class OrderNode {
+        final Entry entry;
+        final OrderNode left;
+        final OrderNode right;
+        final int size;
+
+        OrderNode(Entry entry, OrderNode left, OrderNode right) {
+            this.entry = entry;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+        }
+    }
+
+
+    /**
+     * Implementation of {@link Iterator} that walks the order tree in order.
+     */
+    private static final class OrderIterator implements Iterator<Chip> {
+        private final ArrayDeque<OrderNode> mStack = new ArrayDeque<>();
+
+        OrderIterator(OrderNode root) {
+            pushLeft(root);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !mStack.isEmpty();
+        }
+
+        @Override
+        public Chip next() {
+            if (mStack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            final OrderNode node = mStack.pop();
+            pushLeft(node.right);
+            return node.entry.chip;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void pushLeft(OrderNode node) {
+            while (node != null) {
+                mStack.push(node);
+                node = node.left;
+            }
+        }
+    }
+
+
+    /**
+     * Unmodifiable list view of the set.
+     */
+    private final class ListView extends AbstractList<Chip> {
+        @Override
+        public Chip get(int index) {
+            return PersistentChipSet.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return PersistentChipSet.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Chip && PersistentChipSet.this.contains((Chip)o);
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return o instanceof Chip ? PersistentChipSet.this.indexOf((Chip)o) : -1;
+        }
+
+        @Override
+        public int lastIndexOf(Object o) {
+            return indexOf(o);
+        }
+
+        @NonNull
+        @Override
+        public Iterator<Chip> iterator() {
+            return PersistentChipSet.this.iterator();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.tylersuehr.chips;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Defines a {@link ChipDataSource} that can search its own filterable chips.
+ *
+ * This is used by the filterable chips list instead of matching every one of the
+ * original chips itself, so that implementations which don't keep all their chips
+ * as objects (or keep an index of them) can find matches without creating them.
+ *
+ * Note: searching happens on a background (filtering) thread.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public interface SearchableChipDataSource extends ChipDataSource {
+    /**
+     * Finds all the filterable chips that match the given pattern.
+     *
+     * @param pattern Lowercase, trimmed text the user has input
+     * @return List of matching {@link Chip}
+     */
+    List<Chip> search(String pattern);
+}
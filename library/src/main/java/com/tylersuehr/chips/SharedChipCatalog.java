@@ -0,0 +1,138 @@
+package com.tylersuehr.chips;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * A {@link ChipCatalog} and its {@link ChipSearchIndex}, shared by several
+ * {@link ChipsInputLayout} (like the To, Cc, and Bcc fields of an email).
+ *
+ * The catalog and index are immutable, so every layout uses the same ones. Each layout
+ * has its own {@link CatalogChipDataSource}, which only keeps track of its own selected
+ * chips. So the chips are only stored and indexed once, however many layouts use them.
+ *
+ * This must be used on the main thread.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public final class SharedChipCatalog {
+    private final ChipCatalog mCatalog;
+    private ChipSearchIndex mSearchIndex;
+    /* Data sources using the catalog, so they get the index once it's loaded */
+    private final List<WeakReference<CatalogChipDataSource>> mDataSources = new ArrayList<>();
+
+
+    public SharedChipCatalog(@NonNull ChipCatalog catalog) {
+        if (catalog == null) {
+            throw new NullPointerException("Catalog cannot be null!");
+        }
+        mCatalog = catalog;
+    }
+
+    /**
+     * Creates a shared catalog of the given chips.
+     *
+     * @param chips List of {@link Chip}
+     * @return {@link SharedChipCatalog}
+     */
+    public static SharedChipCatalog of(@NonNull List<? extends Chip> chips) {
+        return new SharedChipCatalog(new ListChipCatalog(chips));
+    }
+
+    public ChipCatalog getCatalog() {
+        return mCatalog;
+    }
+
+    @Nullable
+    public ChipSearchIndex getSearchIndex() {
+        return mSearchIndex;
+    }
+
+    /**
+     * Loads the index of the catalog from the given cache in the background (building
+     * it if needed) once, and gives it to every data source using the catalog.
+     *
+     * @param cache {@link ChipSearchIndexCache}
+     */
+    public void loadSearchIndex(@NonNull ChipSearchIndexCache cache) {
+        loadSearchIndex(cache, 0);
+    }
+
+    /**
+     * Loads the index of the given version of the catalog, like
+     * {@link #loadSearchIndex(ChipSearchIndexCache)}.
+     *
+     * @param cache {@link ChipSearchIndexCache}
+     * @param version Version of the catalog, or 0 if it isn't known
+     */
+    public void loadSearchIndex(@NonNull ChipSearchIndexCache cache, long version) {
+        if (version == 0 && mCatalog instanceof ChipCatalog.Versioned) {
+            version = ((ChipCatalog.Versioned)mCatalog).getVersion();
+        }
+        cache.loadAsync(mCatalog, version, new ChipSearchIndexCache.Callback() {
+            @Override
+            public void onSearchIndexLoaded(ChipSearchIndex index) {
+                setSearchIndex(index);
+            }
+        });
+    }
+
+    /**
+     * Sets the index of the catalog, and gives it to every data source using it.
+     *
+     * @param index {@link ChipSearchIndex} of the catalog
+     */
+    public void setSearchIndex(@NonNull ChipSearchIndex index) {
+        mSearchIndex = index;
+        final Iterator<WeakReference<CatalogChipDataSource>> iterator = mDataSources.iterator();
+        while (iterator.hasNext()) {
+            final CatalogChipDataSource dataSource = iterator.next().get();
+            if (dataSource == null || dataSource.getCatalog() != mCatalog) {
+                iterator.remove();
+            } else {
+                dataSource.setSearchIndex(index);
+            }
+        }
+    }
+
+    /**
+     * Makes the given data source use this catalog, and its index once it's loaded.
+     * The data source keeps its own selected chips.
+     *
+     * @param dataSource {@link CatalogChipDataSource}
+     */
+    public void addDataSource(@NonNull CatalogChipDataSource dataSource) {
+        if (dataSource.getCatalog() != mCatalog) {
+            dataSource.setCatalog(mCatalog);
+        }
+        if (mSearchIndex != null) {
+            dataSource.setSearchIndex(mSearchIndex);
+        }
+
+        // Only keep data sources that are still used, and don't add one twice
+        final Iterator<WeakReference<CatalogChipDataSource>> iterator = mDataSources.iterator();
+        while (iterator.hasNext()) {
+            final CatalogChipDataSource existing = iterator.next().get();
+            if (existing == null || existing == dataSource || existing.getCatalog() != mCatalog) {
+                iterator.remove();
+            }
+        }
+        mDataSources.add(new WeakReference<>(dataSource));
+    }
+
+    /**
+     * Creates a new data source that uses this catalog.
+     * @return {@link CatalogChipDataSource}
+     */
+    public CatalogChipDataSource newDataSource() {
+        final CatalogChipDataSource dataSource = new CatalogChipDataSource(mCatalog);
+        addDataSource(dataSource);
+        return dataSource;
+    }
+}
@@ -8,6 +8,9 @@ import android.view.KeyCharacterMap;
 import android.view.KeyEvent;
 import android.view.ViewConfiguration;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Copyright © 2017 Tyler Suehr
  *
@@ -67,4 +70,112 @@ final class Utils {
         }
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Copies the given array with the given element appended to it.
+     *
+     * @param array Array to copy
+     * @param element Element to append
+     * @return New array containing the element
+     */
+    static <T> T[] arrayAppend(T[] array, T element) {
+        final T[] copy = Arrays.copyOf(array, array.length + 1);
+        copy[array.length] = element;
+        return copy;
+    }
+
+    /**
+     * Copies the given array without the first occurrence of the given element.
+     *
+     * @param array Array to copy
+     * @param element Element to remove
+     * @return New array without the element, or the same array if not found
+     */
+    static <T> T[] arrayRemove(T[] array, T element) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].equals(element)) {
+                final T[] copy = Arrays.copyOf(array, array.length - 1);
+                System.arraycopy(array, i + 1, copy, i, array.length - i - 1);
+                return copy;
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Checks if a chip with the given title and subtitle matches the given filter
+     * pattern, without creating any new strings.
+     *
+     * A chip matches if its title contains the pattern, or its subtitle contains the
+     * pattern when ignoring whitespace (like spaces in phone numbers).
+     *
+     * @param title Title of the chip
+     * @param subtitle Subtitle of the chip, if any
+     * @param pattern Lowercase pattern
+     * @return True if the chip matches
+     */
+    static boolean matchesFilter(CharSequence title, CharSequence subtitle, String pattern) {
+        return containsIgnoreCase(title, pattern, false)
+                || (subtitle != null && containsIgnoreCase(subtitle, pattern, true));
+    }
+
+    /**
+     * Checks if the given text contains the given lowercase pattern, ignoring case.
+     *
+     * @param text Text to search in
+     * @param pattern Lowercase pattern
+     * @param skipWhitespace True if whitespace in the text should be ignored
+     * @return True if the text contains the pattern
+     */
+    static boolean containsIgnoreCase(CharSequence text, String pattern, boolean skipWhitespace) {
+        final int patternLength = pattern.length();
+        if (patternLength == 0) { return true; }
+
+        final int length = text.length();
+        for (int start = 0; start < length; start++) {
+            int i = start;
+            int j = 0;
+            while (i < length && j < patternLength) {
+                final char c = text.charAt(i++);
+                if (skipWhitespace && Character.isWhitespace(c)) {
+                    continue;
+                }
+                if (Character.toLowerCase(c) != pattern.charAt(j)) {
+                    break;
+                }
+                if (++j == patternLength) {
+                    return true;
+                }
+            }
+            if (i == length) {
+                // Ran out of text, so no later start can fit the pattern either
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Selects all the given chips in the given data source; at once if it can (see
+     * {@link BulkChipDataSource}), or else one at a time, the same way.
+     *
+     * @param dataSource {@link ChipDataSource}
+     * @param chips List of {@link Chip}
+     */
+    static void takeChips(ChipDataSource dataSource, List<? extends Chip> chips) {
+        if (dataSource instanceof BulkChipDataSource) {
+            ((BulkChipDataSource)dataSource).takeChips(chips);
+            return;
+        }
+        for (Chip chip : chips) {
+            if (dataSource.existsInSelected(chip)) {
+                continue;
+            }
+            if (chip.isFilterable() && dataSource.existsInFiltered(chip)) {
+                dataSource.takeChip(chip);
+            } else {
+                dataSource.addSelectedChip(chip);
+            }
+        }
+    }
+}
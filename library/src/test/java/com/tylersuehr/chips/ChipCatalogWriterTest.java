@@ -0,0 +1,119 @@
+package com.tylersuehr.chips;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Tests that catalogs written by {@link ChipCatalogWriter} are read back the same by
+ * {@link MappedChipCatalog}.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipCatalogWriterTest {
+    private static final long[] IDS = { 42, -7, 0, Long.MAX_VALUE, 1000000, Long.MIN_VALUE, 5 };
+    private static final String[] TITLES = {
+            "Alice", "Bob", "", "Ünïcödé ✓", "Dave", "Eve", "Frank"
+    };
+    private static final String[] SUBTITLES = {
+            "alice@example.com", null, "empty title", "", null, "eve@example.com", null
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+
+    @Test
+    public void writeTo_readsBackEveryRow() throws IOException {
+        final MappedChipCatalog catalog = writeAndOpen(createWriter());
+
+        assertEquals(IDS.length, catalog.getCount());
+        for (int row = 0; row < IDS.length; row++) {
+            assertEquals(IDS[row], catalog.getId(row));
+            assertEquals(TITLES[row], catalog.getTitle(row).toString());
+            if (SUBTITLES[row] == null) {
+                assertNull(catalog.getSubtitle(row));
+            } else {
+                assertEquals(SUBTITLES[row], catalog.getSubtitle(row).toString());
+            }
+        }
+    }
+
+    @Test
+    public void indexOfId_findsEveryRow() throws IOException {
+        final MappedChipCatalog catalog = writeAndOpen(createWriter());
+        for (int row = 0; row < IDS.length; row++) {
+            assertEquals(row, catalog.indexOfId(IDS[row]));
+        }
+        assertEquals(-1, catalog.indexOfId(43));
+        assertEquals(-1, catalog.indexOfId(-1));
+    }
+
+    @Test
+    public void getChip_isFoundByIndexOf() throws IOException {
+        final MappedChipCatalog catalog = writeAndOpen(createWriter());
+        for (int row = 0; row < IDS.length; row++) {
+            final Chip chip = catalog.getChip(row);
+            assertEquals(IDS[row], chip.getId());
+            assertEquals(TITLES[row], chip.getTitle());
+            assertEquals(row, catalog.indexOf(chip));
+        }
+        assertEquals(-1, catalog.indexOf(new TestChip("42", "Alice")));
+    }
+
+    @Test
+    public void writeTo_manyRows() throws IOException {
+        final ChipCatalogWriter writer = new ChipCatalogWriter();
+        for (int i = 0; i < 5000; i++) {
+            // Ids out of order, so the id index has to sort them
+            writer.add((i * 7919L) % 5003, "Contact " + i, i % 3 == 0 ? null : "Subtitle " + i);
+        }
+        final MappedChipCatalog catalog = writeAndOpen(writer);
+
+        assertEquals(5000, catalog.getCount());
+        for (int i = 0; i < 5000; i += 37) {
+            assertEquals(i, catalog.indexOfId((i * 7919L) % 5003));
+            assertEquals("Contact " + i, catalog.getTitle(i).toString());
+        }
+    }
+
+    @Test
+    public void open_givesFileCatalogsAVersion() throws IOException {
+        assertNotEquals(0, writeAndOpen(createWriter()).getVersion());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void writeTo_rejectsDuplicateIds() throws IOException {
+        final ChipCatalogWriter writer = new ChipCatalogWriter()
+                .add(1, "Alice", null)
+                .add(2, "Bob", null)
+                .add(1, "Carol", null);
+        writer.writeTo(mFolder.newFile("duplicate.chips"));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void add_rejectsNullTitle() {
+        new ChipCatalogWriter().add(1, null, null);
+    }
+
+    private MappedChipCatalog writeAndOpen(ChipCatalogWriter writer) throws IOException {
+        final File file = mFolder.newFile();
+        writer.writeTo(file);
+        return MappedChipCatalog.open(file);
+    }
+
+    private static ChipCatalogWriter createWriter() {
+        final ChipCatalogWriter writer = new ChipCatalogWriter();
+        for (int i = 0; i < IDS.length; i++) {
+            writer.add(IDS[i], TITLES[i], SUBTITLES[i]);
+        }
+        return writer;
+    }
+}
@@ -0,0 +1,107 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Tests {@link ChipIdMap}, the stable ids given to chips for an adapter.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipIdMapTest {
+    @Test
+    public void getId_usesNonNegativeLongIds() {
+        final ChipIdMap map = new ChipIdMap();
+        assertEquals(0, map.getId(new TestChip(0L, "Zero")));
+        assertEquals(42, map.getId(new TestChip(42L, "Answer")));
+        assertEquals(Long.MAX_VALUE, map.getId(new TestChip(Long.MAX_VALUE, "Max")));
+    }
+
+    @Test
+    public void getId_givesOtherIdsUnusedNegativeIds() {
+        final ChipIdMap map = new ChipIdMap();
+        final List<Chip> chips = new ArrayList<>();
+        chips.add(new TestChip("alice", "Alice"));
+        chips.add(new TestChip(-2L, "Minus two"));
+        chips.add(new TestChip(7, "Integer seven"));
+        chips.add(new TestChip(-1L, "Minus one"));
+        chips.add(new TestChip(null, "No id"));
+
+        final Set<Long> ids = new HashSet<>();
+        for (Chip chip : chips) {
+            final long id = map.getId(chip);
+            assertTrue(id < -1);
+            assertTrue(id != ChipIdMap.INPUT_ID && id != ChipIdMap.SUMMARY_ID);
+            assertTrue(ids.add(id));
+        }
+    }
+
+    @Test
+    public void getId_isStable() {
+        final ChipIdMap map = new ChipIdMap();
+        final long id = map.getId(new TestChip("alice", "Alice"));
+        map.getId(new TestChip("bob", "Bob"));
+
+        // Another chip with the same id gets the same stable id
+        assertEquals(id, map.getId(new TestChip("alice", "Alice Smith")));
+    }
+
+    @Test
+    public void getId_mapsChipsWithoutIdsByIdentity() {
+        final ChipIdMap map = new ChipIdMap();
+        final Chip first = new TestChip(null, "Custom");
+        final Chip second = new TestChip(null, "Custom");
+
+        final long id = map.getId(first);
+        assertNotEquals(id, map.getId(second));
+        assertEquals(id, map.getId(first));
+    }
+
+    @Test
+    public void trim_keepsIdsOfGivenChips() {
+        final ChipIdMap map = new ChipIdMap();
+        final List<Chip> chips = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            chips.add(new TestChip("chip" + i, "Chip " + i));
+        }
+        final Chip custom = new TestChip(null, "Custom");
+        chips.add(custom);
+
+        final List<Long> ids = new ArrayList<>();
+        for (Chip chip : chips) {
+            ids.add(map.getId(chip));
+        }
+
+        final List<Chip> shown = new ArrayList<>();
+        shown.add(chips.get(3));
+        shown.add(custom);
+        map.trim(shown, shown.size());
+
+        assertEquals((long)ids.get(3), map.getId(chips.get(3)));
+        assertEquals((long)ids.get(chips.size() - 1), map.getId(custom));
+        // Forgotten ids are never given out again
+        assertFalse(ids.contains(map.getId(chips.get(4))));
+    }
+
+    @Test
+    public void trim_keepsEverythingWhileFewIdsAreStored() {
+        final ChipIdMap map = new ChipIdMap();
+        final Chip alice = new TestChip("alice", "Alice");
+        final Chip bob = new TestChip("bob", "Bob");
+        final long bobId = map.getId(bob);
+        map.getId(alice);
+
+        final List<Chip> shown = new ArrayList<>();
+        shown.add(alice);
+        map.trim(shown, shown.size());
+        assertEquals(bobId, map.getId(bob));
+    }
+}
@@ -0,0 +1,133 @@
+package com.tylersuehr.chips;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Tests {@link ChipSearchIndex}: the rows it finds for a pattern, and that an index
+ * written to a file finds the same rows once it's mapped back.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipSearchIndexTest {
+    private static final String[] PATTERNS = {
+            "ali", "alice", "BOB", "son", "ob ", "example", "ada lov", "é", "café", "zzz"
+    };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+
+    @Test
+    public void candidates_includeEveryMatchingRow() {
+        final ChipCatalog catalog = createCatalog();
+        final ChipSearchIndex index = ChipSearchIndex.build(catalog, ChipSearchIndex.hash(catalog));
+        assertEquals(catalog.getCount(), index.getRowCount());
+
+        for (String pattern : PATTERNS) {
+            final String lowercase = pattern.toLowerCase(Locale.ROOT);
+            final int[] candidates = index.candidates(lowercase);
+            final List<Integer> matches = matchingRows(catalog, lowercase);
+            if (candidates == null) {
+                continue;
+            }
+            for (int i = 1; i < candidates.length; i++) {
+                assertTrue(candidates[i - 1] < candidates[i]);
+            }
+            for (int row : matches) {
+                assertTrue(pattern, Arrays.binarySearch(candidates, row) >= 0);
+            }
+        }
+    }
+
+    @Test
+    public void candidates_areNullForShortPatterns() {
+        final ChipSearchIndex index = ChipSearchIndex.build(createCatalog(), 0);
+        assertNull(index.candidates("al"));
+        assertNull(index.candidates("a b"));
+    }
+
+    @Test
+    public void candidates_areEmptyWithoutMatches() {
+        final ChipSearchIndex index = ChipSearchIndex.build(createCatalog(), 0);
+        assertEquals(0, index.candidates("zzz").length);
+    }
+
+    @Test
+    public void writeTo_mapsBackToSameIndex() throws IOException {
+        final ChipCatalog catalog = createCatalog();
+        final ChipSearchIndex index = ChipSearchIndex.build(catalog, ChipSearchIndex.hash(catalog));
+        final File file = mFolder.newFile("catalog.idx");
+        index.writeTo(file);
+
+        final ChipSearchIndex mapped = ChipSearchIndex.open(file);
+        assertEquals(index.getRowCount(), mapped.getRowCount());
+        assertEquals(index.getContentHash(), mapped.getContentHash());
+        for (String pattern : PATTERNS) {
+            final String lowercase = pattern.toLowerCase(Locale.ROOT);
+            assertArrayEquals(pattern, index.candidates(lowercase), mapped.candidates(lowercase));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsOtherFiles() throws IOException {
+        final File file = mFolder.newFile("other.idx");
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[64]);
+        } finally {
+            out.close();
+        }
+        ChipSearchIndex.open(file);
+    }
+
+    @Test
+    public void hash_changesWithText() {
+        final List<Chip> chips = createChips();
+        final long hash = ChipSearchIndex.hash(new ListChipCatalog(chips));
+        assertEquals(hash, ChipSearchIndex.hash(new ListChipCatalog(createChips())));
+
+        chips.set(0, new TestChip(0L, "Alicia", "alice@example.com"));
+        assertNotEquals(hash, ChipSearchIndex.hash(new ListChipCatalog(chips)));
+    }
+
+    private static ChipCatalog createCatalog() {
+        return new ListChipCatalog(createChips());
+    }
+
+    private static List<Chip> createChips() {
+        final List<Chip> chips = new ArrayList<>();
+        chips.add(new TestChip(0L, "Alice", "alice@example.com"));
+        chips.add(new TestChip(1L, "Bob Jobson", "bob@example.com"));
+        chips.add(new TestChip(2L, "Ada Lovelace"));
+        chips.add(new TestChip(3L, "Café Owner", "Crème brûlée"));
+        chips.add(new TestChip(4L, "Malice", null));
+        chips.add(new TestChip(5L, "Carol"));
+        return chips;
+    }
+
+    private static List<Integer> matchingRows(ChipCatalog catalog, String pattern) {
+        final List<Integer> rows = new ArrayList<>();
+        for (int row = 0; row < catalog.getCount(); row++) {
+            final CharSequence subtitle = catalog.getSubtitle(row);
+            if (catalog.getTitle(row).toString().toLowerCase(Locale.ROOT).contains(pattern)
+                    || (subtitle != null && subtitle.toString().toLowerCase(Locale.ROOT).contains(pattern))) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,151 @@
+package com.tylersuehr.chips;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Tests {@link ChipUndoLog} through the undo and redo of a {@link ListChipDataSource}:
+ * changes are undone as a whole, and the oldest changes are forgotten once there
+ * are more than the limit.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipUndoLogTest {
+    private ListChipDataSource mDataSource;
+    private Chip mAlice;
+    private Chip mBob;
+    private Chip mCarol;
+
+
+    @Before
+    public void setUp() {
+        mAlice = new TestChip(1L, "Alice");
+        mBob = new TestChip(2L, "Bob");
+        mCarol = new TestChip(3L, "Carol");
+        mDataSource = new ListChipDataSource();
+        mDataSource.setFilterableChips(Arrays.asList(mAlice, mBob, mCarol));
+        mDataSource.setUndoLimit(32);
+    }
+
+    @Test
+    public void noUndoLimit_recordsNothing() {
+        mDataSource.setUndoLimit(0);
+        mDataSource.takeChip(mAlice);
+        assertFalse(mDataSource.canUndo());
+        assertFalse(mDataSource.undo());
+    }
+
+    @Test
+    public void undo_unselectsTakenChip() {
+        assertFalse(mDataSource.canUndo());
+        mDataSource.takeChip(mAlice);
+        assertTrue(mDataSource.canUndo());
+
+        assertTrue(mDataSource.undo());
+        assertFalse(mDataSource.existsInSelected(mAlice));
+        assertTrue(mDataSource.existsInFiltered(mAlice));
+        assertFalse(mDataSource.canUndo());
+        assertTrue(mDataSource.canRedo());
+
+        assertTrue(mDataSource.redo());
+        assertTrue(mDataSource.existsInSelected(mAlice));
+        assertFalse(mDataSource.canRedo());
+    }
+
+    @Test
+    public void undo_selectsRemovedChipAgain() {
+        mDataSource.takeChip(mAlice);
+        mDataSource.removeSelectedChip(mAlice);
+        assertFalse(mDataSource.existsInSelected(mAlice));
+
+        assertTrue(mDataSource.undo());
+        assertTrue(mDataSource.existsInSelected(mAlice));
+    }
+
+    @Test
+    public void undo_undoesWholeChange() {
+        mDataSource.takeChip(mAlice);
+        mDataSource.takeChip(mBob);
+        mDataSource.clearSelectedChips();
+        assertTrue(mDataSource.getSelectedChips().isEmpty());
+
+        assertTrue(mDataSource.undo());
+        assertEquals(Arrays.asList(mAlice, mBob), mDataSource.getSelectedChips());
+
+        assertTrue(mDataSource.undo());
+        assertEquals(Arrays.asList(mAlice), mDataSource.getSelectedChips());
+
+        assertTrue(mDataSource.redo());
+        assertTrue(mDataSource.redo());
+        assertTrue(mDataSource.getSelectedChips().isEmpty());
+    }
+
+    @Test
+    public void newChange_forgetsUndoneChanges() {
+        mDataSource.takeChip(mAlice);
+        mDataSource.undo();
+        assertTrue(mDataSource.canRedo());
+
+        mDataSource.takeChip(mBob);
+        assertFalse(mDataSource.canRedo());
+        assertFalse(mDataSource.redo());
+    }
+
+    @Test
+    public void undoLimit_forgetsOldestChanges() {
+        mDataSource.setUndoLimit(2);
+        mDataSource.takeChip(mAlice);
+        mDataSource.takeChip(mBob);
+        mDataSource.takeChip(mCarol);
+
+        assertTrue(mDataSource.undo());
+        assertTrue(mDataSource.undo());
+        assertFalse(mDataSource.undo());
+        assertEquals(Arrays.asList(mAlice), mDataSource.getSelectedChips());
+    }
+
+    @Test
+    public void undoLimit_countsChangesNotChips() {
+        mDataSource.setUndoLimit(2);
+        mDataSource.takeChip(mAlice);
+        mDataSource.takeChip(mBob);
+        mDataSource.takeChip(mCarol);
+
+        // One change of three chips only forgets the oldest change
+        mDataSource.clearSelectedChips();
+        assertTrue(mDataSource.undo());
+        assertEquals(Arrays.asList(mAlice, mBob, mCarol), mDataSource.getSelectedChips());
+        assertTrue(mDataSource.undo());
+        assertFalse(mDataSource.undo());
+        assertEquals(Arrays.asList(mAlice, mBob), mDataSource.getSelectedChips());
+    }
+
+    @Test
+    public void undoLimit_lowerLimitKeepsNewestChanges() {
+        mDataSource.takeChip(mAlice);
+        mDataSource.takeChip(mBob);
+        mDataSource.takeChip(mCarol);
+        mDataSource.setUndoLimit(1);
+
+        assertTrue(mDataSource.undo());
+        assertFalse(mDataSource.canUndo());
+        assertEquals(Arrays.asList(mAlice, mBob), mDataSource.getSelectedChips());
+    }
+
+    @Test
+    public void clearUndoHistory_forgetsEverything() {
+        mDataSource.takeChip(mAlice);
+        mDataSource.takeChip(mBob);
+        mDataSource.undo();
+        mDataSource.clearUndoHistory();
+
+        assertFalse(mDataSource.canUndo());
+        assertFalse(mDataSource.canRedo());
+    }
+}
@@ -0,0 +1,30 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Tests what backspace does in {@link ChipsAdapter}, when the input is empty.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class ChipsAdapterTest {
+    @Test
+    public void backspace_removesLastChip() {
+        assertEquals(ChipsAdapter.BACKSPACE_REMOVES, ChipsAdapter.getBackspaceAction(3, false));
+    }
+
+    @Test
+    public void backspace_expandsCollapsedChipsFirst() {
+        // The last chip is hidden behind the summary chip
+        assertEquals(ChipsAdapter.BACKSPACE_EXPANDS, ChipsAdapter.getBackspaceAction(5, true));
+    }
+
+    @Test
+    public void backspace_ignoresNoChips() {
+        assertEquals(ChipsAdapter.BACKSPACE_IGNORED, ChipsAdapter.getBackspaceAction(0, false));
+    }
+}
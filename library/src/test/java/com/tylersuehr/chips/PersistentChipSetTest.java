@@ -0,0 +1,142 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Tests {@link PersistentChipSet}: its hash trie (finding chips) and its order treap
+ * (positions of chips), and that changes never affect the sets they were made from.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class PersistentChipSetTest {
+    @Test
+    public void plus_keepsChipsInOrder() {
+        final List<Chip> chips = createChips(500);
+        final PersistentChipSet set = PersistentChipSet.of(chips);
+
+        assertEquals(chips.size(), set.size());
+        assertEquals(chips, set.asList());
+        for (int i = 0; i < chips.size(); i++) {
+            assertSame(chips.get(i), set.get(i));
+            assertEquals(i, set.indexOf(chips.get(i)));
+            assertEquals(i, set.asList().indexOf(chips.get(i)));
+        }
+
+        final Iterator<Chip> iterator = set.iterator();
+        for (Chip chip : chips) {
+            assertSame(chip, iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void plus_returnsSameSetForChipAlreadyInIt() {
+        final Chip chip = new TestChip(1L, "Alice");
+        final PersistentChipSet set = PersistentChipSet.empty().plus(chip);
+        assertSame(set, set.plus(chip));
+    }
+
+    @Test
+    public void minus_doesNotChangeOriginalSet() {
+        final List<Chip> chips = createChips(64);
+        final PersistentChipSet set = PersistentChipSet.of(chips);
+        final PersistentChipSet removed = set.minus(chips.get(10));
+
+        assertEquals(64, set.size());
+        assertTrue(set.contains(chips.get(10)));
+        assertEquals(chips, set.asList());
+
+        assertEquals(63, removed.size());
+        assertFalse(removed.contains(chips.get(10)));
+        assertEquals(-1, removed.indexOf(chips.get(10)));
+        assertEquals(10, removed.indexOf(chips.get(11)));
+        assertSame(chips.get(11), removed.get(10));
+    }
+
+    @Test
+    public void minus_returnsSameSetForChipNotInIt() {
+        final PersistentChipSet set = PersistentChipSet.of(createChips(8));
+        assertSame(set, set.minus(new TestChip(100L, "Missing")));
+    }
+
+    @Test
+    public void minusAll_keepsOrderOfRemainingChips() {
+        final List<Chip> chips = createChips(1000);
+        final List<Chip> odd = new ArrayList<>();
+        final List<Chip> even = new ArrayList<>();
+        for (int i = 0; i < chips.size(); i++) {
+            (i % 2 == 0 ? even : odd).add(chips.get(i));
+        }
+
+        final PersistentChipSet set = PersistentChipSet.of(chips).minusAll(even);
+        assertEquals(odd, set.asList());
+        for (int i = 0; i < odd.size(); i++) {
+            assertEquals(i, set.indexOf(odd.get(i)));
+        }
+        for (Chip chip : even) {
+            assertFalse(set.contains(chip));
+        }
+        assertTrue(set.minusAll(odd).isEmpty());
+    }
+
+    @Test
+    public void collidingHashes_areAllFound() {
+        final List<Chip> chips = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            chips.add(new CollidingChip(i));
+        }
+
+        PersistentChipSet set = PersistentChipSet.of(chips);
+        assertEquals(chips, set.asList());
+        for (Chip chip : chips) {
+            assertTrue(set.contains(chip));
+        }
+        assertFalse(set.contains(new CollidingChip(20)));
+
+        set = set.minus(chips.get(5));
+        assertFalse(set.contains(chips.get(5)));
+        assertTrue(set.contains(chips.get(6)));
+        assertEquals(5, set.indexOf(chips.get(6)));
+    }
+
+    @Test
+    public void plus_afterMinusAddsChipToEnd() {
+        final List<Chip> chips = createChips(5);
+        final PersistentChipSet set = PersistentChipSet.of(chips)
+                .minus(chips.get(0))
+                .plus(chips.get(0));
+        assertEquals(4, set.indexOf(chips.get(0)));
+        assertSame(chips.get(1), set.get(0));
+    }
+
+    private static List<Chip> createChips(int count) {
+        final List<Chip> chips = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chips.add(new TestChip((long)i, "Chip " + i));
+        }
+        return chips;
+    }
+
+
+    /**
+     * Chip that always has the same hash code, so every one of them collides.
+     */
+    private static final class CollidingChip extends TestChip {
+        CollidingChip(int id) {
+            super((long)id, "Colliding " + id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+}
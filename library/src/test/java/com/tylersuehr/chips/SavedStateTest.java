@@ -0,0 +1,69 @@
+package com.tylersuehr.chips;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Tests the zigzag varints that {@link ChipsInputLayout.SavedState} saves the ids of
+ * selected chips as.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+public class SavedStateTest {
+    private static final long[] IDS = {
+            0, 1, -1, 63, -64, 64, -65, 8191, 8192, 123456789, -123456789,
+            Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE
+    };
+
+
+    @Test
+    public void readId_readsBackEveryId() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long id : IDS) {
+            ChipsInputLayout.SavedState.writeId(out, id);
+        }
+
+        final byte[] bytes = out.toByteArray();
+        final int[] position = new int[1];
+        for (long id : IDS) {
+            assertEquals(id, ChipsInputLayout.SavedState.readId(bytes, position));
+        }
+        assertEquals(bytes.length, position[0]);
+    }
+
+    @Test
+    public void writeId_keepsSmallIdsShort() {
+        assertEquals(1, sizeOf(0));
+        assertEquals(1, sizeOf(-1));
+        assertEquals(1, sizeOf(63));
+        assertEquals(1, sizeOf(-64));
+        assertEquals(2, sizeOf(64));
+        assertEquals(2, sizeOf(-65));
+        assertEquals(10, sizeOf(Long.MAX_VALUE));
+        assertEquals(10, sizeOf(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void writeId_zigzagsSign() {
+        assertArrayEquals(new byte[] { 0 }, bytesOf(0));
+        assertArrayEquals(new byte[] { 1 }, bytesOf(-1));
+        assertArrayEquals(new byte[] { 2 }, bytesOf(1));
+        assertArrayEquals(new byte[] { 3 }, bytesOf(-2));
+        assertArrayEquals(new byte[] { (byte)0x80, 1 }, bytesOf(64));
+    }
+
+    private static int sizeOf(long id) {
+        return bytesOf(id).length;
+    }
+
+    private static byte[] bytesOf(long id) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ChipsInputLayout.SavedState.writeId(out, id);
+        return out.toByteArray();
+    }
+}
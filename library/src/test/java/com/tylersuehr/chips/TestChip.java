@@ -0,0 +1,58 @@
+package com.tylersuehr.chips;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+
+/**
+ * Copyright © 2017 Tyler Suehr
+ *
+ * Plain chip used by the unit tests, which doesn't need anything from Android.
+ *
+ * @author Tyler Suehr
+ * @version 1.0
+ */
+class TestChip extends Chip {
+    private final Object mId;
+    private final String mTitle;
+    private final String mSubtitle;
+
+
+    TestChip(Object id, String title) {
+        this(id, title, null);
+    }
+
+    TestChip(Object id, String title, String subtitle) {
+        mId = id;
+        mTitle = title;
+        mSubtitle = subtitle;
+    }
+
+    @Override
+    public Object getId() {
+        return mId;
+    }
+
+    @Override
+    public String getTitle() {
+        return mTitle;
+    }
+
+    @Override
+    public String getSubtitle() {
+        return mSubtitle;
+    }
+
+    @Override
+    public Uri getAvatarUri() {
+        return null;
+    }
+
+    @Override
+    public Drawable getAvatarDrawable() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return mTitle;
+    }
+}